@@ -0,0 +1,518 @@
+package struc1;
+
+/**
+ *
+ * AbstractWAVLTree
+ *
+ * The key independent part of a WAVL Tree: node links, ranks, subtree sizes and rebalancing.
+ * Subclasses add a key to their node type and implement search and insert with their own comparisons,
+ * so that primitive keys are compared without boxing.
+ *
+ */
+public abstract class AbstractWAVLTree<V, N extends AbstractWAVLTree.Node<V, N>> {
+	protected final N external;
+	protected N root;
+
+	/**
+	 * protected AbstractWAVLTree(N external)
+	 * initializes an empty tree, using external as the external node of all leaves
+	 */
+	protected AbstractWAVLTree(N external) {
+		this.external = external;
+		this.root = null;
+		external.rank = -1;
+		external.size = 0;
+		external.left = null;
+		external.right = null;
+	}
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return root == null;
+	}
+
+	/**
+	 * public int size()
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return empty() ? 0 : root.size;
+	}
+
+	/**
+	 * public void clear()
+	 * removes all items from the tree
+	 */
+	public void clear() {
+		root = null;
+	}
+
+	/**
+	 * public N getRoot()
+	 * Returns the root node, or null if the tree is empty
+	 */
+	public N getRoot() {
+		return root;
+	}
+
+	/**
+	 * public N getMin()
+	 * Returns the node with the smallest key in the tree, or null if the tree is empty
+	 */
+	public N getMin() {
+		if (empty()) {
+			return null;
+		}
+		N node = root;
+		while (node.left != external) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	/**
+	 * public N getMax()
+	 * Returns the node with the largest key in the tree, or null if the tree is empty
+	 */
+	public N getMax() {
+		if (empty()) {
+			return null;
+		}
+		N node = root;
+		while (node.right != external) {
+			node = node.right;
+		}
+		return node;
+	}
+
+	/**
+	 * public V min()
+	 * Returns the info of the item with the smallest key in the tree, or null if the tree is empty
+	 */
+	public V min() {
+		return empty() ? null : getMin().value;
+	}
+
+	/**
+	 * public V max()
+	 * Returns the info of the item with the largest key in the tree, or null if the tree is empty
+	 */
+	public V max() {
+		return empty() ? null : getMax().value;
+	}
+
+	/**
+	 * public V select(int i)
+	 *
+	 * Returns the value of the i'th smallest key (counting from 1), or null if i is out of range
+	 */
+	public V select(int i) {
+		if (i > size() || i <= 0) {
+			return null;
+		}
+		return selectNode(root, i - 1).value;
+	}
+
+	/**
+	 * public N selectNode(N curr, int i)
+	 * Returns the node with the i'th smallest key (counting from 0) in the subtree of curr
+	 */
+	public N selectNode(N curr, int i) {
+		int r = curr.left.size;
+		while (r != i) {
+			if (r > i) {
+				curr = curr.left;
+			}
+			else {
+				i -= r + 1;
+				curr = curr.right;
+			}
+			r = curr.left.size;
+		}
+		return curr;
+	}
+
+	/**
+	 * public Object[] infoToArray()
+	 *
+	 * Returns an array which contains all info in the tree, sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public Object[] infoToArray() {
+		Object[] arr = new Object[size()];
+		N curr = getMin();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = curr.value;
+			curr = findSuccessor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public N findSuccessor(N node)
+	 * Returns the node following node in the tree, or null if there is none
+	 */
+	public N findSuccessor(N node) {
+		if (node.right != external) {
+			node = node.right;
+			while (node.left != external) {
+				node = node.left;
+			}
+			return node;
+		}
+		N parent = node.parent;
+		while (parent != null && parent.right == node) {
+			node = parent;
+			parent = parent.parent;
+		}
+		return parent;
+	}
+
+	/**
+	 * public N findPredecessor(N node)
+	 * Returns the node preceding node in the tree, or null if there is none
+	 */
+	public N findPredecessor(N node) {
+		if (node.left != external) {
+			node = node.left;
+			while (node.right != external) {
+				node = node.right;
+			}
+			return node;
+		}
+		N parent = node.parent;
+		while (parent != null && parent.left == node) {
+			node = parent;
+			parent = parent.parent;
+		}
+		return parent;
+	}
+
+	/**
+	 * protected int insertNode(N parent, N node, boolean asLeft)
+	 * hangs the new node as the left (or right) child of parent, which must be the place a search
+	 * for node's key ended at, or null if the tree is empty.
+	 * returns the number of rebalancing operations needed
+	 */
+	protected int insertNode(N parent, N node, boolean asLeft) {
+		node.rank = 0;
+		node.size = 1;
+		node.left = external;
+		node.right = external;
+		node.parent = parent;
+		if (parent == null) {
+			root = node;
+			return 0;
+		}
+		if (asLeft) {
+			parent.left = node;
+		}
+		else {
+			parent.right = node;
+		}
+		parent.size++;
+		return insertRebalance(parent, 1);
+	}
+
+	/**
+	 * protected int deleteNode(N node)
+	 * removes node from the tree.
+	 * returns the number of rebalancing operations needed
+	 */
+	protected int deleteNode(N node) {
+		if (node.left != external && node.right != external) {
+			N succ = node.right;
+			while (succ.left != external) {
+				succ = succ.left;
+			}
+			swapWithSuccessor(node, succ);
+		}
+		N child = node.left != external ? node.left : node.right;
+		N parent = node.parent;
+		replaceChild(parent, node, child);
+		node.left = null;
+		node.right = null;
+		node.parent = null;
+		if (parent == null) {
+			return 0;
+		}
+		parent.size--;
+		return deleteRebalance(parent, -1);
+	}
+
+	/**
+	 * switches the positions (and ranks and sizes) of node and succ, the leftmost node of node's right subtree.
+	 * Afterwards node has no left child. The nodes themselves keep their keys and values.
+	 */
+	private void swapWithSuccessor(N node, N succ) {
+		int rank = node.rank;
+		node.rank = succ.rank;
+		succ.rank = rank;
+		int size = node.size;
+		node.size = succ.size;
+		succ.size = size;
+
+		N left = node.left;
+		N right = node.right;
+		N succParent = succ.parent;
+		N succRight = succ.right;
+		replaceChild(node.parent, node, succ);
+		succ.left = left;
+		left.parent = succ;
+		if (succ == right) {
+			succ.right = node;
+			node.parent = succ;
+		}
+		else {
+			succ.right = right;
+			right.parent = succ;
+			succParent.left = node;
+			node.parent = succParent;
+		}
+		node.left = external;
+		node.right = succRight;
+		if (succRight != external) {
+			succRight.parent = node;
+		}
+	}
+
+	/**
+	 * makes newChild the child of parent instead of oldChild (or the root, if parent is null)
+	 */
+	private void replaceChild(N parent, N oldChild, N newChild) {
+		if (parent == null) {
+			root = newChild == external ? null : newChild;
+		}
+		else if (parent.left == oldChild) {
+			parent.left = newChild;
+		}
+		else {
+			parent.right = newChild;
+		}
+		if (newChild != external) {
+			newChild.parent = parent;
+		}
+	}
+
+	/**
+	 * rotates the subtree rooted at node left. Ranks are left unchanged, sizes are updated
+	 */
+	protected void rotateLeft(N node) {
+		N child = node.right;
+		N inner = child.left;
+		node.right = inner;
+		if (inner != external) {
+			inner.parent = node;
+		}
+		replaceChild(node.parent, node, child);
+		child.left = node;
+		node.parent = child;
+		node.updateSize();
+		child.updateSize();
+	}
+
+	/**
+	 * rotates the subtree rooted at node right. Ranks are left unchanged, sizes are updated
+	 */
+	protected void rotateRight(N node) {
+		N child = node.left;
+		N inner = child.right;
+		node.left = inner;
+		if (inner != external) {
+			inner.parent = node;
+		}
+		replaceChild(node.parent, node, child);
+		child.right = node;
+		node.parent = child;
+		node.updateSize();
+		child.updateSize();
+	}
+
+	/**
+	 * rotates child above its parent. Ranks are left unchanged, sizes are updated
+	 */
+	private void rotateUp(N child) {
+		if (child.parent.left == child) {
+			rotateRight(child.parent);
+		}
+		else {
+			rotateLeft(child.parent);
+		}
+	}
+
+	/**
+	 * rebalances the tree after an insertion below node, climbing towards the root.
+	 * The steps are chosen by WAVLRules. returns the number of rebalancing operations needed
+	 */
+	protected int insertRebalance(N node) {
+		return insertRebalance(node, 0);
+	}
+
+	/**
+	 * insertRebalance, which also adds added to the sizes of node's ancestors (node's own size must be right).
+	 * The climb that rebalances fixes the sizes on its way, and only the part of the path above
+	 * the node where rebalancing stops is climbed again for the sizes alone
+	 */
+	protected int insertRebalance(N node, int added) {
+		int count = 0;
+		while (node != null) {
+			int leftDiff = node.rank - node.left.rank;
+			int step = WAVLRules.insertStep(leftDiff, node.rank - node.right.rank);
+			if (step == WAVLRules.DONE) {
+				break;
+			}
+			if (step == WAVLRules.PROMOTE) {
+				node.rank += WAVLRules.nodeDelta(step, false);
+				count += WAVLRules.cost(step);
+				node = node.parent;
+				if (node != null) {
+					node.size += added;
+				}
+				continue;
+			}
+			N child = leftDiff == 0 ? node.left : node.right;
+			N grandChild = leftDiff == 0 ? child.right : child.left;
+			step = WAVLRules.insertRotation(child.rank - (leftDiff == 0 ? child.left : child.right).rank);
+			count += rotate(step, node, child, grandChild);
+			node = node.parent;				//the top of the rotated subtree, whose size the rotation set
+			break;
+		}
+		addToAncestorSizes(node, added);
+		return count;
+	}
+
+	/**
+	 * adds delta to the sizes of node's ancestors
+	 */
+	private void addToAncestorSizes(N node, int delta) {
+		if (node == null || delta == 0) {
+			return;
+		}
+		for (N p = node.parent; p != null; p = p.parent) {
+			p.size += delta;
+		}
+	}
+
+	/**
+	 * rebalances the tree after a deletion below node, climbing towards the root.
+	 * The steps are chosen by WAVLRules. returns the number of rebalancing operations needed
+	 */
+	protected int deleteRebalance(N node) {
+		return deleteRebalance(node, 0);
+	}
+
+	/**
+	 * deleteRebalance, which also adds delta to the sizes of node's ancestors (node's own size must be right)
+	 * in the same climb, like insertRebalance(node, added)
+	 */
+	protected int deleteRebalance(N node, int delta) {
+		int count = 0;
+		while (node != null) {
+			boolean leaf = node.left == external && node.right == external;
+			int leftDiff = node.rank - node.left.rank;
+			int step = WAVLRules.deleteStep(leaf, leftDiff, node.rank - node.right.rank);
+			if (step == WAVLRules.DONE) {
+				break;
+			}
+			if (step == WAVLRules.DELETE_ROTATE) {
+				N sibling = leftDiff == 3 ? node.right : node.left;
+				N grandChild = leftDiff == 3 ? sibling.left : sibling.right;
+				N outer = leftDiff == 3 ? sibling.right : sibling.left;
+				step = WAVLRules.deleteRotation(sibling.rank - grandChild.rank, sibling.rank - outer.rank);
+				if (step != WAVLRules.DOUBLE_DEMOTE) {
+					count += rotate(step, node, sibling, grandChild);
+					node = node.parent;		//the top of the rotated subtree, whose size the rotation set
+					break;
+				}
+				sibling.rank += WAVLRules.childDelta(step);
+			}
+			node.rank += WAVLRules.nodeDelta(step, leaf);
+			count += WAVLRules.cost(step);
+			node = node.parent;
+			if (node != null) {
+				node.size += delta;
+			}
+		}
+		addToAncestorSizes(node, delta);
+		return count;
+	}
+
+	/**
+	 * carries out a rotation step of WAVLRules at node, whose child (or sibling) is child and whose grandChild
+	 * is the inner child of child, and sets the ranks of the nodes that moved.
+	 * returns the number of rebalancing operations the step counts
+	 */
+	private int rotate(int step, N node, N child, N grandChild) {
+		if (WAVLRules.doubleRotation(step)) {
+			rotateUp(grandChild);
+			rotateUp(grandChild);
+			grandChild.rank += WAVLRules.grandChildDelta(step);
+		}
+		else {
+			rotateUp(child);
+		}
+		child.rank += WAVLRules.childDelta(step);
+		node.rank += WAVLRules.nodeDelta(step, node.left == external && node.right == external);
+		return WAVLRules.cost(step);
+	}
+
+	/**
+	 * public abstract static class Node
+	 * links, rank, subtree size and value of a node; subclasses add the key
+	 */
+	public abstract static class Node<V, N extends Node<V, N>> {
+		N left;
+		N right;
+		N parent;
+		int rank;
+		int size;
+		V value;
+
+		protected Node(V value) {
+			this.value = value;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public N getLeft() {
+			return left;
+		}
+
+		public N getRight() {
+			return right;
+		}
+
+		public N getParent() {
+			return parent;
+		}
+
+		public int getRank() {
+			return rank;
+		}
+
+		public int getSubtreeSize() {
+			return size;
+		}
+
+		/**
+		 * public boolean isInnerNode()
+		 * returns false for the external node, the only node without children links
+		 */
+		public boolean isInnerNode() {
+			return left != null;
+		}
+
+		/**
+		 * Updates the node's size according to the sizes of its children
+		 */
+		void updateSize() {
+			size = 1 + left.size + right.size;
+		}
+	}
+}
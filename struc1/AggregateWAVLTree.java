@@ -0,0 +1,147 @@
+package struc1;
+
+import struc1.WAVLTree.WAVLNode;
+
+/**
+ *
+ * AggregateWAVLTree
+ *
+ * A WAVLTree whose every node also keeps the summary (by a WAVLAggregate) of the items in its subtree,
+ * so the summary of the items in any key range takes O(log n) time.
+ * The summary is recomputed wherever the tree recomputes subtree sizes from the children (updateSize,
+ * called by setLeft, setRight and the rotations, joins and bulk builds), and on the path from a
+ * changed node up to the root after insert and delete, which update sizes by counting instead.
+ *
+ * join, split and the set operations return AggregateWAVLTrees with the same aggregate. join and the set
+ * operations throw IllegalArgumentException, before changing either tree, if the other tree is not an
+ * AggregateWAVLTree with the same aggregate instance.
+ *
+ */
+public class AggregateWAVLTree<A> extends WAVLTree {
+	private final WAVLAggregate<A> aggregate;
+
+	/**
+	 * public AggregateWAVLTree(WAVLAggregate<A> aggregate)
+	 * initializes an empty tree that summarizes its items by aggregate
+	 */
+	public AggregateWAVLTree(WAVLAggregate<A> aggregate) {
+		this(aggregate, 0);
+	}
+
+	/**
+	 * public AggregateWAVLTree(WAVLAggregate<A> aggregate, int poolCapacity)
+	 * initializes an empty tree that summarizes its items by aggregate, and keeps up to poolCapacity
+	 * deleted nodes for reuse (see WAVLTree(int poolCapacity))
+	 */
+	public AggregateWAVLTree(WAVLAggregate<A> aggregate, int poolCapacity) {
+		super(poolCapacity);
+		this.aggregate = aggregate;
+	}
+
+	/**
+	 * public A aggregate()
+	 * returns the summary of all items
+	 */
+	public A aggregate() {
+		return summaryOf(getRoot());
+	}
+
+	/**
+	 * public A rangeAggregate(int lo, int hi)
+	 *
+	 * returns the summary of the items with lo <= key <= hi, in O(log n) time.
+	 * The search paths of lo and hi part at the highest node in the range; below it, the summaries of
+	 * whole subtrees between the two paths are combined with the nodes on the paths that are in the range
+	 */
+	public A rangeAggregate(int lo, int hi) {
+		WAVLNode node = getRoot();
+		while (node != null && node.isInnerNode() && (node.getKey() < lo || node.getKey() > hi)) {
+			node = node.getKey() < lo ? node.getRight() : node.getLeft();
+		}
+		if (lo > hi || node == null || !node.isInnerNode()) {
+			return aggregate.identity();
+		}
+		A low = aggregate.identity();		//the items of node's left subtree with key >= lo
+		for (WAVLNode curr = node.getLeft(); curr.isInnerNode(); ) {
+			if (curr.getKey() >= lo) {
+				low = aggregate.combine(aggregate.combine(own(curr), summaryOf(curr.getRight())), low);
+				curr = curr.getLeft();
+			}
+			else {
+				curr = curr.getRight();
+			}
+		}
+		A high = aggregate.identity();		//the items of node's right subtree with key <= hi
+		for (WAVLNode curr = node.getRight(); curr.isInnerNode(); ) {
+			if (curr.getKey() <= hi) {
+				high = aggregate.combine(high, aggregate.combine(summaryOf(curr.getLeft()), own(curr)));
+				curr = curr.getRight();
+			}
+			else {
+				curr = curr.getLeft();
+			}
+		}
+		return aggregate.combine(aggregate.combine(low, own(node)), high);
+	}
+
+	private A own(WAVLNode node) {
+		return aggregate.of(node.getKey(), node.getValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	private A summaryOf(WAVLNode node) {
+		return node == null || !node.isInnerNode() ? aggregate.identity() : ((AggregateNode<A>) node).summary;
+	}
+
+	@Override
+	WAVLNode createNode(int k, String i) {
+		return new AggregateNode<A>(k, i, aggregate);
+	}
+
+	@Override
+	WAVLTree emptyTree() {
+		return new AggregateWAVLTree<A>(aggregate);
+	}
+
+	@Override
+	void refreshUpwards(WAVLNode node) {
+		for (; node != null; node = node.getParent()) {
+			node.updateSize();
+		}
+	}
+
+	@Override
+	boolean sameNodes(WAVLTree other) {
+		return super.sameNodes(other) && ((AggregateWAVLTree<?>) other).aggregate == aggregate;
+	}
+
+	/**
+	 * a node that also keeps the summary of its subtree
+	 */
+	private static final class AggregateNode<A> extends WAVLNode {
+		private final WAVLAggregate<A> aggregate;
+		private A summary;
+
+		AggregateNode(int key, String value, WAVLAggregate<A> aggregate) {
+			super(key, value);
+			this.aggregate = aggregate;
+		}
+
+		/**
+		 * updates the size and the summary of the node from those of its children
+		 */
+		@Override
+		public void updateSize() {
+			super.updateSize();
+			if (isInnerNode()) {
+				A own = aggregate.of(getKey(), getValue());
+				summary = aggregate.combine(aggregate.combine(summaryOf(getLeft()), own), summaryOf(getRight()));
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private A summaryOf(WAVLNode node) {
+			return node.isInnerNode() ? ((AggregateNode<A>) node).summary : aggregate.identity();
+		}
+	}
+}
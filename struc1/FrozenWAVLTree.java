@@ -0,0 +1,211 @@
+package struc1;
+
+/**
+ *
+ * FrozenWAVLTree
+ *
+ * A read-only copy of a WAVLTree, made by WAVLTree.freeze(), for trees that are built once and then only read.
+ * The items are kept in two arrays in Eytzinger (breadth first) order: slot 1 holds the root of a complete
+ * binary search tree, and the children of slot i are in slots 2i and 2i+1. The first levels of every search
+ * share a few cache lines, and the 16 descendants of a slot four levels down, 16i to 16i+15, are adjacent,
+ * so a search misses the cache about once every four levels instead of once per level. Searches step down
+ * with a comparison folded into the index (i = 2i + (key < k)), with no branch to mispredict.
+ *
+ * The slot of the item with a given rank, and the rank of the item in a given slot, follow from the shape of
+ * the complete tree, so select and rank need no sizes or extra arrays.
+ *
+ */
+public class FrozenWAVLTree {
+	private final int[] keys;			//slot 0 is unused
+	private final String[] values;
+	private final int size;
+	private final int height;			//the depth of the deepest slot
+	private final int lastLevel;		//the number of slots at depth height
+	private int next;					//the slot append fills next
+
+	/**
+	 * creates an empty copy for size items, to be filled by append in ascending key order
+	 */
+	FrozenWAVLTree(int size) {
+		this.keys = new int[size + 1];
+		this.values = new String[size + 1];
+		this.size = size;
+		this.height = 31 - Integer.numberOfLeadingZeros(Math.max(size, 1));
+		this.lastLevel = size - (1 << height) + 1;
+		this.next = size == 0 ? 0 : slotOf(0);
+	}
+
+	/**
+	 * stores the next item in key order
+	 */
+	void append(int key, String value) {
+		keys[next] = key;
+		values[next] = value;
+		next = successor(next);
+	}
+
+	public boolean empty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * public String search(int k)
+	 * returns the info of the item with key k, or null if there is none
+	 */
+	public String search(int k) {
+		int slot = ceilingSlot(k);
+		return slot != 0 && keys[slot] == k ? values[slot] : null;
+	}
+
+	/**
+	 * public String select(int i)
+	 * returns the info of the i'th smallest key (counting from 1), or null if there is no such item
+	 */
+	public String select(int i) {
+		if (i > size || i <= 0) {
+			return null;
+		}
+		return values[slotOf(i - 1)];
+	}
+
+	/**
+	 * public int selectKey(int i)
+	 * returns the i'th smallest key (counting from 1). i must be between 1 and size()
+	 */
+	public int selectKey(int i) {
+		if (i > size || i <= 0) {
+			throw new IndexOutOfBoundsException("no item of rank " + i + " in a tree of size " + size);
+		}
+		return keys[slotOf(i - 1)];
+	}
+
+	/**
+	 * public int rank(int k)
+	 * returns the number of keys smaller than or equal to k.
+	 * If k is in the tree, select(rank(k)) returns its info
+	 */
+	public int rank(int k) {
+		return k == Integer.MAX_VALUE ? size : countBelow(k + 1);
+	}
+
+	/**
+	 * public int countRange(int lo, int hi)
+	 * returns the number of keys k with lo <= k <= hi
+	 */
+	public int countRange(int lo, int hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		return rank(hi) - countBelow(lo);
+	}
+
+	public String min() {
+		return size == 0 ? null : values[slotOf(0)];
+	}
+
+	public String max() {
+		return size == 0 ? null : values[slotOf(size - 1)];
+	}
+
+	/**
+	 * public void forEach(int lo, int hi, IntObjConsumer<String> action)
+	 * calls action with the key and info of every item with lo <= key <= hi, in ascending key order
+	 */
+	public void forEach(int lo, int hi, IntObjConsumer<String> action) {
+		if (lo > hi) {
+			return;
+		}
+		for (int slot = ceilingSlot(lo); slot != 0 && keys[slot] <= hi; slot = successor(slot)) {
+			action.accept(keys[slot], values[slot]);
+		}
+	}
+
+	/**
+	 * public void forEach(IntObjConsumer<String> action)
+	 * calls action with the key and info of every item, in ascending key order
+	 */
+	public void forEach(IntObjConsumer<String> action) {
+		forEach(Integer.MIN_VALUE, Integer.MAX_VALUE, action);
+	}
+
+	public int[] keysToArray() {
+		int[] arr = new int[size];
+		for (int slot = size == 0 ? 0 : slotOf(0), i = 0; slot != 0; slot = successor(slot)) {
+			arr[i++] = keys[slot];
+		}
+		return arr;
+	}
+
+	public String[] infoToArray() {
+		String[] arr = new String[size];
+		for (int slot = size == 0 ? 0 : slotOf(0), i = 0; slot != 0; slot = successor(slot)) {
+			arr[i++] = values[slot];
+		}
+		return arr;
+	}
+
+	/**
+	 * returns the slot of the smallest key that is at least k, or 0 if there is none.
+	 * The descent always goes down to a missing slot; the answer is the last slot where it went left,
+	 * which is found by dropping the trailing right turns (one bits) and the left turn before them
+	 */
+	private int ceilingSlot(int k) {
+		int[] keys = this.keys;
+		int slot = 1;
+		while (slot <= size) {
+			slot = 2 * slot + (keys[slot] < k ? 1 : 0);
+		}
+		return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+	}
+
+	/**
+	 * returns the number of keys smaller than k
+	 */
+	private int countBelow(int k) {
+		int slot = ceilingSlot(k);
+		return slot == 0 ? size : rankOf(slot);
+	}
+
+	/**
+	 * returns the slot that follows slot in key order, or 0 after the last one
+	 */
+	private int successor(int slot) {
+		if (2 * slot + 1 <= size) {
+			slot = 2 * slot + 1;
+			while (2 * slot <= size) {
+				slot *= 2;
+			}
+			return slot;
+		}
+		return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+	}
+
+	/**
+	 * returns the slot of the item with rank r (counting from 0).
+	 * In the perfect tree of the same height, ranks alternate between the deepest level and the levels above it.
+	 * The deepest level holds only its first lastLevel slots, so past them every other rank of the perfect tree is missing
+	 */
+	private int slotOf(int r) {
+		int perfect = r < 2 * lastLevel ? r : 2 * r - 2 * lastLevel + 1;
+		int up = Integer.numberOfTrailingZeros(perfect + 1);		//the distance from the deepest level
+		return (1 << (height - up)) + ((perfect + 1) >>> (up + 1));
+	}
+
+	/**
+	 * returns the rank (counting from 0) of the item in slot, the inverse of slotOf
+	 */
+	private int rankOf(int slot) {
+		int depth = 31 - Integer.numberOfLeadingZeros(slot);
+		int offset = slot - (1 << depth);
+		if (depth == height) {
+			return 2 * offset;
+		}
+		int perfect = ((2 * offset + 1) << (height - depth)) - 1;
+		int deepBefore = (2 * offset + 1) << (height - depth - 1);		//slots of the deepest level to the left of slot
+		return perfect - Math.max(0, deepBefore - lastLevel);
+	}
+}
@@ -0,0 +1,251 @@
+package struc1;
+
+import java.util.Comparator;
+
+/**
+ *
+ * GenericWAVLTree
+ *
+ * A WAVL Tree with keys and values of any type. Keys are ordered by a Comparator,
+ * or by their natural ordering if none is given.
+ *
+ */
+public class GenericWAVLTree<K, V> extends AbstractWAVLTree<V, GenericWAVLTree.GenericNode<K, V>> {
+	private final Comparator<? super K> comparator;
+
+	/**
+	 * public GenericWAVLTree()
+	 * initializes an empty tree ordered by the natural ordering of its keys, which must be Comparable
+	 */
+	public GenericWAVLTree() {
+		this(null);
+	}
+
+	/**
+	 * public GenericWAVLTree(Comparator<? super K> comparator)
+	 * initializes an empty tree ordered by comparator (or by the natural ordering of its keys, if comparator is null)
+	 */
+	public GenericWAVLTree(Comparator<? super K> comparator) {
+		super(new GenericNode<K, V>(null, null));
+		this.comparator = comparator;
+	}
+
+	/**
+	 * public Comparator<? super K> comparator()
+	 * returns the comparator ordering the keys, or null if they are in their natural ordering
+	 */
+	public Comparator<? super K> comparator() {
+		return comparator;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected int compare(K k1, K k2) {
+		return comparator == null ? ((Comparable<? super K>) k1).compareTo(k2) : comparator.compare(k1, k2);
+	}
+
+	/**
+	 * public V search(K k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public V search(K k) {
+		if (empty()) {
+			return null;
+		}
+		GenericNode<K, V> node = searchWithNode(k);
+		return compare(k, node.key) == 0 ? node.value : null;
+	}
+
+	/**
+	 * public GenericNode<K, V> searchWithNode(K k)
+	 * If k is a key in the tree, returns the node with key k
+	 * Otherwise returns the node that should be k's parent. The tree must not be empty
+	 */
+	public GenericNode<K, V> searchWithNode(K k) {
+		GenericNode<K, V> node = root;
+		int c;
+		while ((c = compare(k, node.key)) != 0) {
+			GenericNode<K, V> next = c > 0 ? node.right : node.left;
+			if (next == external) {
+				return node;
+			}
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * public int insert(K k, V i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(K k, V i) {
+		if (empty()) {
+			compare(k, k);		//type (and null) check
+			return insertNode(null, new GenericNode<K, V>(k, i), false);
+		}
+		GenericNode<K, V> parent = searchWithNode(k);
+		int c = compare(k, parent.key);
+		if (c == 0) {
+			return -1;
+		}
+		return insertNode(parent, new GenericNode<K, V>(k, i), c < 0);
+	}
+
+	/**
+	 * public int delete(K k)
+	 *
+	 * deletes an item with key k from the tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(K k) {
+		if (empty()) {
+			return -1;
+		}
+		GenericNode<K, V> node = searchWithNode(k);
+		if (compare(k, node.key) != 0) {
+			return -1;
+		}
+		return deleteNode(node);
+	}
+
+	/**
+	 * public GenericNode<K, V> getNode(K k)
+	 * returns the node with key k, or null if there is none
+	 */
+	public GenericNode<K, V> getNode(K k) {
+		if (empty()) {
+			return null;
+		}
+		GenericNode<K, V> node = searchWithNode(k);
+		return compare(k, node.key) == 0 ? node : null;
+	}
+
+	/**
+	 * public GenericNode<K, V> floorNode(K k)
+	 * returns the node with the largest key smaller than or equal to k, or null if there is none
+	 */
+	public GenericNode<K, V> floorNode(K k) {
+		return boundNode(k, true, true);
+	}
+
+	/**
+	 * public GenericNode<K, V> ceilingNode(K k)
+	 * returns the node with the smallest key larger than or equal to k, or null if there is none
+	 */
+	public GenericNode<K, V> ceilingNode(K k) {
+		return boundNode(k, false, true);
+	}
+
+	/**
+	 * public GenericNode<K, V> lowerNode(K k)
+	 * returns the node with the largest key strictly smaller than k, or null if there is none
+	 */
+	public GenericNode<K, V> lowerNode(K k) {
+		return boundNode(k, true, false);
+	}
+
+	/**
+	 * public GenericNode<K, V> higherNode(K k)
+	 * returns the node with the smallest key strictly larger than k, or null if there is none
+	 */
+	public GenericNode<K, V> higherNode(K k) {
+		return boundNode(k, false, false);
+	}
+
+	/**
+	 * searches for k, remembering the last node passed on the wanted side of k
+	 */
+	private GenericNode<K, V> boundNode(K k, boolean below, boolean inclusive) {
+		GenericNode<K, V> best = null;
+		GenericNode<K, V> node = root;
+		while (node != null && node.isInnerNode()) {
+			int c = compare(node.key, k);
+			if (c == 0) {
+				if (inclusive) {
+					return node;
+				}
+				node = below ? node.left : node.right;
+			}
+			else if (c < 0) {		//node is below k, continue in the right subtree
+				if (below) {
+					best = node;
+				}
+				node = node.right;
+			}
+			else {					//node is above k, continue in the left subtree
+				if (!below) {
+					best = node;
+				}
+				node = node.left;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * public int rank(K k)
+	 * returns the number of keys in the tree that are smaller than or equal to k
+	 */
+	public int rank(K k) {
+		return countBelow(k, true);
+	}
+
+	/**
+	 * returns the number of keys smaller than k (or equal to k, if inclusive), in one descent using subtree sizes
+	 */
+	int countBelow(K k, boolean inclusive) {
+		int count = 0;
+		GenericNode<K, V> node = root;
+		while (node != null && node.isInnerNode()) {
+			int c = compare(node.key, k);
+			if (c < 0 || (inclusive && c == 0)) {
+				count += node.left.size + 1;
+				if (c == 0) {
+					break;
+				}
+				node = node.right;
+			}
+			else {
+				node = node.left;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * public Object[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public Object[] keysToArray() {
+		Object[] arr = new Object[size()];
+		GenericNode<K, V> curr = getMin();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = curr.key;
+			curr = findSuccessor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public static class GenericNode
+	 */
+	public static class GenericNode<K, V> extends AbstractWAVLTree.Node<V, GenericNode<K, V>> {
+		private final K key;
+
+		public GenericNode(K key, V value) {
+			super(value);
+			this.key = key;
+		}
+
+		public K getKey() {
+			return key;
+		}
+	}
+}
@@ -0,0 +1,464 @@
+package struc1;
+
+/**
+ *
+ * IndexedWAVLTree
+ *
+ * A WAVL Tree whose nodes are addressed by int indexes instead of object references.
+ * The rebalancing logic lives here, and subclasses only decide where the fields of
+ * node i are stored. Index 0 is the external node: its rank must read as -1 and its size as 0,
+ * and it is never written to.
+ *
+ */
+public abstract class IndexedWAVLTree {
+	protected static final int EXTERNAL = 0;
+
+	protected abstract int key(int node);
+	protected abstract void setKey(int node, int key);
+	protected abstract String value(int node);
+	protected abstract void setValue(int node, String value);
+	protected abstract int rank(int node);
+	protected abstract void setRank(int node, int rank);
+	protected abstract int subtreeSize(int node);
+	protected abstract void setSubtreeSize(int node, int size);
+	protected abstract int left(int node);
+	protected abstract void setLeft(int node, int child);
+	protected abstract int right(int node);
+	protected abstract void setRight(int node, int child);
+	protected abstract int parent(int node);
+	protected abstract void setParent(int node, int parent);
+
+	protected abstract int root();
+	protected abstract void setRoot(int node);
+	protected abstract int minNode();
+	protected abstract void setMinNode(int node);
+	protected abstract int maxNode();
+	protected abstract void setMaxNode(int node);
+
+	/**
+	 * returns the index of an unused node that may hold value; its fields are initialized by the caller
+	 */
+	protected abstract int allocateSlot(String value);
+
+	/**
+	 * marks node as unused so that allocateSlot may return it again
+	 */
+	protected abstract void releaseSlot(int node);
+
+	/**
+	 * public boolean empty()
+	 *
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return root() == EXTERNAL;
+	}
+
+	/**
+	 * public String search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public String search(int k) {
+		if (empty()) {
+			return null;
+		}
+		int node = searchIndex(k);
+		return key(node) == k ? value(node) : null;
+	}
+
+	/**
+	 * If k is a key in the tree, returns the index of the node with key k
+	 * Otherwise returns the index of the node that should be k's parent
+	 */
+	private int searchIndex(int k) {
+		int node = root();
+		while (key(node) != k) {
+			int next = key(node) < k ? right(node) : left(node);
+			if (next == EXTERNAL) {
+				return node;
+			}
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		if (empty()) {
+			int node = allocate(k, i);
+			setRoot(node);
+			setMinNode(node);
+			setMaxNode(node);
+			return 0;
+		}
+		int parent = searchIndex(k);
+		if (key(parent) == k) {
+			return -1;
+		}
+		int node = allocate(k, i);
+		setParent(node, parent);
+		if (k > key(parent)) {
+			setRight(parent, node);
+			if (k > key(maxNode())) {
+				setMaxNode(node);
+			}
+		}
+		else {
+			setLeft(parent, node);
+			if (k < key(minNode())) {
+				setMinNode(node);
+			}
+		}
+		for (int p = parent; p != EXTERNAL; p = parent(p)) {
+			setSubtreeSize(p, subtreeSize(p) + 1);
+		}
+		return insertRebalance(parent);
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		if (empty()) {
+			return -1;
+		}
+		int node = searchIndex(k);
+		if (key(node) != k) {
+			return -1;
+		}
+		if (node == minNode()) {
+			setMinNode(successor(node));
+		}
+		if (node == maxNode()) {
+			setMaxNode(predecessor(node));
+		}
+		if (left(node) != EXTERNAL && right(node) != EXTERNAL) {	//move the successor's item here and remove the successor
+			int succ = right(node);
+			while (left(succ) != EXTERNAL) {
+				succ = left(succ);
+			}
+			setKey(node, key(succ));
+			setValue(node, value(succ));
+			if (maxNode() == succ) {
+				setMaxNode(node);
+			}
+			node = succ;
+		}
+		int child = left(node) != EXTERNAL ? left(node) : right(node);
+		int parent = parent(node);
+		for (int p = parent; p != EXTERNAL; p = parent(p)) {
+			setSubtreeSize(p, subtreeSize(p) - 1);
+		}
+		replaceChild(parent, node, child);
+		release(node);
+		if (parent == EXTERNAL) {
+			return 0;
+		}
+		return deleteRebalance(parent);
+	}
+
+	/**
+	 * rebalances the tree after an insertion below node, climbing towards the root.
+	 * The steps are chosen by WAVLRules. returns the number of rebalancing operations needed
+	 */
+	private int insertRebalance(int node) {
+		int count = 0;
+		while (node != EXTERNAL) {
+			int leftDiff = rank(node) - rank(left(node));
+			int step = WAVLRules.insertStep(leftDiff, rank(node) - rank(right(node)));
+			if (step == WAVLRules.DONE) {
+				return count;
+			}
+			if (step == WAVLRules.PROMOTE) {
+				setRank(node, rank(node) + WAVLRules.nodeDelta(step, false));
+				count += WAVLRules.cost(step);
+				node = parent(node);
+				continue;
+			}
+			int child = leftDiff == 0 ? left(node) : right(node);
+			int grandChild = leftDiff == 0 ? right(child) : left(child);
+			step = WAVLRules.insertRotation(rank(child) - rank(leftDiff == 0 ? left(child) : right(child)));
+			return count + rotate(step, node, child, grandChild);
+		}
+		return count;
+	}
+
+	/**
+	 * rebalances the tree after a deletion below node, climbing towards the root.
+	 * The steps are chosen by WAVLRules. returns the number of rebalancing operations needed
+	 */
+	private int deleteRebalance(int node) {
+		int count = 0;
+		while (node != EXTERNAL) {
+			boolean leaf = left(node) == EXTERNAL && right(node) == EXTERNAL;
+			int leftDiff = rank(node) - rank(left(node));
+			int step = WAVLRules.deleteStep(leaf, leftDiff, rank(node) - rank(right(node)));
+			if (step == WAVLRules.DONE) {
+				return count;
+			}
+			if (step == WAVLRules.DELETE_ROTATE) {
+				int sibling = leftDiff == 3 ? right(node) : left(node);
+				int grandChild = leftDiff == 3 ? left(sibling) : right(sibling);
+				int outer = leftDiff == 3 ? right(sibling) : left(sibling);
+				step = WAVLRules.deleteRotation(rank(sibling) - rank(grandChild), rank(sibling) - rank(outer));
+				if (step != WAVLRules.DOUBLE_DEMOTE) {
+					return count + rotate(step, node, sibling, grandChild);
+				}
+				setRank(sibling, rank(sibling) + WAVLRules.childDelta(step));
+			}
+			setRank(node, rank(node) + WAVLRules.nodeDelta(step, leaf));
+			count += WAVLRules.cost(step);
+			node = parent(node);
+		}
+		return count;
+	}
+
+	/**
+	 * carries out a rotation step of WAVLRules at node, whose child (or sibling) is child and whose grandChild
+	 * is the inner child of child, and sets the ranks of the nodes that moved.
+	 * returns the number of rebalancing operations the step counts
+	 */
+	private int rotate(int step, int node, int child, int grandChild) {
+		if (WAVLRules.doubleRotation(step)) {
+			rotateUp(grandChild);
+			rotateUp(grandChild);
+			setRank(grandChild, rank(grandChild) + WAVLRules.grandChildDelta(step));
+		}
+		else {
+			rotateUp(child);
+		}
+		setRank(child, rank(child) + WAVLRules.childDelta(step));
+		boolean leaf = left(node) == EXTERNAL && right(node) == EXTERNAL;
+		setRank(node, rank(node) + WAVLRules.nodeDelta(step, leaf));
+		return WAVLRules.cost(step);
+	}
+
+	/**
+	 * rotates child above its parent. Ranks are left unchanged, sizes are updated
+	 */
+	private void rotateUp(int child) {
+		int parent = parent(child);
+		if (left(parent) == child) {
+			rotateRight(parent);
+		}
+		else {
+			rotateLeft(parent);
+		}
+	}
+
+	/**
+	 * rotates the subtree rooted at node left. Ranks are left unchanged, sizes are updated
+	 */
+	private void rotateLeft(int node) {
+		int child = right(node);
+		int inner = left(child);
+		setRight(node, inner);
+		if (inner != EXTERNAL) {
+			setParent(inner, node);
+		}
+		replaceChild(parent(node), node, child);
+		setLeft(child, node);
+		setParent(node, child);
+		updateSize(node);
+		updateSize(child);
+	}
+
+	/**
+	 * rotates the subtree rooted at node right. Ranks are left unchanged, sizes are updated
+	 */
+	private void rotateRight(int node) {
+		int child = left(node);
+		int inner = right(child);
+		setLeft(node, inner);
+		if (inner != EXTERNAL) {
+			setParent(inner, node);
+		}
+		replaceChild(parent(node), node, child);
+		setRight(child, node);
+		setParent(node, child);
+		updateSize(node);
+		updateSize(child);
+	}
+
+	/**
+	 * makes newChild the child of parent instead of oldChild (or the root, if parent is external)
+	 */
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		if (parent == EXTERNAL) {
+			setRoot(newChild);
+		}
+		else if (left(parent) == oldChild) {
+			setLeft(parent, newChild);
+		}
+		else {
+			setRight(parent, newChild);
+		}
+		if (newChild != EXTERNAL) {
+			setParent(newChild, parent);
+		}
+	}
+
+	private void updateSize(int node) {
+		setSubtreeSize(node, 1 + subtreeSize(left(node)) + subtreeSize(right(node)));
+	}
+
+	/**
+	 * returns the index of the node following node in the tree, or 0 if there is none
+	 */
+	private int successor(int node) {
+		if (right(node) != EXTERNAL) {
+			node = right(node);
+			while (left(node) != EXTERNAL) {
+				node = left(node);
+			}
+			return node;
+		}
+		int parent = parent(node);
+		while (parent != EXTERNAL && right(parent) == node) {
+			node = parent;
+			parent = parent(parent);
+		}
+		return parent;
+	}
+
+	/**
+	 * returns the index of the node preceding node in the tree, or 0 if there is none
+	 */
+	private int predecessor(int node) {
+		if (left(node) != EXTERNAL) {
+			node = left(node);
+			while (right(node) != EXTERNAL) {
+				node = right(node);
+			}
+			return node;
+		}
+		int parent = parent(node);
+		while (parent != EXTERNAL && left(parent) == node) {
+			node = parent;
+			parent = parent(parent);
+		}
+		return parent;
+	}
+
+	/**
+	 * returns the index of a new leaf holding k and i
+	 */
+	private int allocate(int k, String i) {
+		int node = allocateSlot(i);
+		setKey(node, k);
+		setValue(node, i);
+		setRank(node, 0);
+		setSubtreeSize(node, 1);
+		setLeft(node, EXTERNAL);
+		setRight(node, EXTERNAL);
+		setParent(node, EXTERNAL);
+		return node;
+	}
+
+	/**
+	 * hands a removed node back to the storage for reuse
+	 */
+	private void release(int node) {
+		setValue(node, null);
+		releaseSlot(node);
+	}
+
+	/**
+	 * public String min()
+	 *
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return empty() ? null : value(minNode());
+	}
+
+	/**
+	 * public String max()
+	 *
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return empty() ? null : value(maxNode());
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] arr = new int[size()];
+		int curr = minNode();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = key(curr);
+			curr = successor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 *
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] arr = new String[size()];
+		int curr = minNode();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = value(curr);
+			curr = successor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public int size()
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return subtreeSize(root());
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * Returns the value of the i'th smallest key (counting from 1),
+	 * or null if i is out of range
+	 */
+	public String select(int i) {
+		if (i > size() || i <= 0) {
+			return null;
+		}
+		int curr = root();
+		int index = i - 1;
+		int r = subtreeSize(left(curr));
+		while (r != index) {
+			if (r > index) {
+				curr = left(curr);
+			}
+			else {
+				index -= r + 1;
+				curr = right(curr);
+			}
+			r = subtreeSize(left(curr));
+		}
+		return value(curr);
+	}
+}
@@ -0,0 +1,119 @@
+package struc1;
+
+import java.util.Arrays;
+
+/**
+ *
+ * IntArrayWAVLTree
+ *
+ * A WAVL Tree with the same public API as WAVLTree, stored as a struct of arrays:
+ * the fields of node i are keys[i], ranks[i], sizes[i], lefts[i], rights[i], parents[i] and values[i].
+ * Links between nodes are array indexes. Index 0 is the external node (rank -1, size 0),
+ * and deleted slots are kept on a free list (chained through lefts) for reuse.
+ *
+ */
+public class IntArrayWAVLTree extends IndexedWAVLTree {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private int[] ranks;
+	private int[] sizes;
+	private int[] lefts;
+	private int[] rights;
+	private int[] parents;
+	private String[] values;
+	private int root;
+	private int min;
+	private int max;
+	private int freeHead;
+	private int used;
+
+	/**
+	 * public IntArrayWAVLTree()
+	 * initializes an empty tree
+	 */
+	public IntArrayWAVLTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * public IntArrayWAVLTree(int initialCapacity)
+	 * initializes an empty tree with room for initialCapacity nodes before the arrays grow
+	 */
+	public IntArrayWAVLTree(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("negative capacity: " + initialCapacity);
+		}
+		int length = initialCapacity + 1;		//slot 0 is the external node
+		keys = new int[length];
+		ranks = new int[length];
+		sizes = new int[length];
+		lefts = new int[length];
+		rights = new int[length];
+		parents = new int[length];
+		values = new String[length];
+		ranks[EXTERNAL] = -1;
+		sizes[EXTERNAL] = 0;
+		root = EXTERNAL;
+		min = EXTERNAL;
+		max = EXTERNAL;
+		freeHead = EXTERNAL;
+		used = 1;
+	}
+
+	protected int key(int node) { return keys[node]; }
+	protected void setKey(int node, int key) { keys[node] = key; }
+	protected String value(int node) { return values[node]; }
+	protected void setValue(int node, String value) { values[node] = value; }
+	protected int rank(int node) { return ranks[node]; }
+	protected void setRank(int node, int rank) { ranks[node] = rank; }
+	protected int subtreeSize(int node) { return sizes[node]; }
+	protected void setSubtreeSize(int node, int size) { sizes[node] = size; }
+	protected int left(int node) { return lefts[node]; }
+	protected void setLeft(int node, int child) { lefts[node] = child; }
+	protected int right(int node) { return rights[node]; }
+	protected void setRight(int node, int child) { rights[node] = child; }
+	protected int parent(int node) { return parents[node]; }
+	protected void setParent(int node, int parent) { parents[node] = parent; }
+
+	protected int root() { return root; }
+	protected void setRoot(int node) { root = node; }
+	protected int minNode() { return min; }
+	protected void setMinNode(int node) { min = node; }
+	protected int maxNode() { return max; }
+	protected void setMaxNode(int node) { max = node; }
+
+	/**
+	 * takes a slot from the free list, or the next unused slot (growing the arrays if needed)
+	 */
+	protected int allocateSlot(String value) {
+		if (freeHead != EXTERNAL) {
+			int node = freeHead;
+			freeHead = lefts[node];
+			return node;
+		}
+		if (used == keys.length) {
+			grow();
+		}
+		return used++;
+	}
+
+	/**
+	 * puts a removed slot on the free list
+	 */
+	protected void releaseSlot(int node) {
+		lefts[node] = freeHead;
+		freeHead = node;
+	}
+
+	private void grow() {
+		int length = Math.max(2 * keys.length, DEFAULT_CAPACITY);
+		keys = Arrays.copyOf(keys, length);
+		ranks = Arrays.copyOf(ranks, length);
+		sizes = Arrays.copyOf(sizes, length);
+		lefts = Arrays.copyOf(lefts, length);
+		rights = Arrays.copyOf(rights, length);
+		parents = Arrays.copyOf(parents, length);
+		values = Arrays.copyOf(values, length);
+	}
+}
@@ -0,0 +1,13 @@
+package struc1;
+
+/**
+ *
+ * IntObjConsumer
+ *
+ * An operation on an int key and an object value, used to visit tree items without boxing the key.
+ *
+ */
+@FunctionalInterface
+public interface IntObjConsumer<V> {
+	void accept(int key, V value);
+}
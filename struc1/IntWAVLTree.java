@@ -0,0 +1,118 @@
+package struc1;
+
+/**
+ *
+ * IntWAVLTree
+ *
+ * A WAVL Tree with int keys and values of any type. Keys are compared as primitives and never boxed.
+ *
+ */
+public class IntWAVLTree<V> extends AbstractWAVLTree<V, IntWAVLTree.IntNode<V>> {
+
+	/**
+	 * public IntWAVLTree()
+	 * initializes an empty tree
+	 */
+	public IntWAVLTree() {
+		super(new IntNode<V>(0, null));
+	}
+
+	/**
+	 * public V search(int k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public V search(int k) {
+		if (empty()) {
+			return null;
+		}
+		IntNode<V> node = searchWithNode(k);
+		return node.key == k ? node.value : null;
+	}
+
+	/**
+	 * public IntNode<V> searchWithNode(int k)
+	 * If k is a key in the tree, returns the node with key k
+	 * Otherwise returns the node that should be k's parent. The tree must not be empty
+	 */
+	public IntNode<V> searchWithNode(int k) {
+		IntNode<V> node = root;
+		while (node.key != k) {
+			IntNode<V> next = node.key < k ? node.right : node.left;
+			if (next == external) {
+				return node;
+			}
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * public int insert(int k, V i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, V i) {
+		if (empty()) {
+			return insertNode(null, new IntNode<V>(k, i), false);
+		}
+		IntNode<V> parent = searchWithNode(k);
+		if (parent.key == k) {
+			return -1;
+		}
+		return insertNode(parent, new IntNode<V>(k, i), k < parent.key);
+	}
+
+	/**
+	 * public int delete(int k)
+	 *
+	 * deletes an item with key k from the tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		if (empty()) {
+			return -1;
+		}
+		IntNode<V> node = searchWithNode(k);
+		if (node.key != k) {
+			return -1;
+		}
+		return deleteNode(node);
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] arr = new int[size()];
+		IntNode<V> curr = getMin();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = curr.key;
+			curr = findSuccessor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public static class IntNode
+	 */
+	public static class IntNode<V> extends AbstractWAVLTree.Node<V, IntNode<V>> {
+		private final int key;
+
+		public IntNode(int key, V value) {
+			super(value);
+			this.key = key;
+		}
+
+		public int getKey() {
+			return key;
+		}
+	}
+}
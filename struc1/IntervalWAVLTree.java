@@ -0,0 +1,196 @@
+package struc1;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import struc1.WAVLTree.WAVLNode;
+
+/**
+ *
+ * IntervalWAVLTree
+ *
+ * A WAVLTree of closed intervals [start, end] with String info, keyed by start, so at most one interval
+ * starts at each point. Every node also keeps the largest end in its subtree. It is recomputed where the
+ * tree recomputes sizes from the children (updateSize, called by the rotations and joins), and on the path
+ * up to the root after insert and delete, so the overlap queries can skip subtrees that end too early.
+ *
+ * Items inserted with the methods of WAVLTree (insert(k, i), insertAll, join) are the point intervals [k, k].
+ * The intervals already in the tree keep their ends through every operation, including the rebuilds
+ * of insertAll and deleteAll, which relink the existing nodes.
+ *
+ */
+public class IntervalWAVLTree extends WAVLTree {
+
+	/**
+	 * public IntervalWAVLTree()
+	 * initializes an empty tree
+	 */
+	public IntervalWAVLTree() {
+		super();
+	}
+
+	/**
+	 * public int insert(int start, int end, String i)
+	 *
+	 * inserts the interval [start, end] with info i.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an interval that starts at start already exists in the tree
+	 */
+	public int insert(int start, int end, String i) {
+		if (end < start) {
+			throw new IllegalArgumentException("the interval [" + start + ", " + end + "] ends before it starts");
+		}
+		int count = insert(start, i);
+		if (count >= 0 && end != start) {
+			IntervalNode node = (IntervalNode) searchWithNode(getRoot(), start);
+			node.end = end;
+			refreshUpwards(node);
+		}
+		return count;
+	}
+
+	/**
+	 * public int end(int start, int missing)
+	 * returns the end of the interval that starts at start, or missing if there is none
+	 */
+	public int end(int start, int missing) {
+		if (empty()) {
+			return missing;
+		}
+		WAVLNode node = searchWithNode(getRoot(), start);
+		return node.getKey() == start ? ((IntervalNode) node).end : missing;
+	}
+
+	/**
+	 * public int maxEnd()
+	 * returns the largest end of an interval, or Integer.MIN_VALUE if the tree is empty
+	 */
+	public int maxEnd() {
+		return maxEndOf(getRoot());
+	}
+
+	/**
+	 * public boolean overlaps(int lo, int hi)
+	 * returns true iff some interval shares a point with [lo, hi]
+	 */
+	public boolean overlaps(int lo, int hi) {
+		return overlapping(lo, hi).hasNext();
+	}
+
+	/**
+	 * public Iterator<IntervalNode> overlapping(int lo, int hi)
+	 *
+	 * Returns an iterator over the intervals that share a point with [lo, hi] (start <= hi and end >= lo),
+	 * in ascending start order. It walks the tree in order, skipping the subtrees whose largest end is
+	 * below lo and stopping at the first start above hi, so the nodes it visits without reporting them
+	 * lie on the paths from the root to the reported intervals and to hi.
+	 * The tree must not be changed while the iterator is used
+	 */
+	public Iterator<IntervalNode> overlapping(int lo, int hi) {
+		return new Iterator<IntervalNode>() {
+			private final WAVLNode[] stack = new WAVLNode[2 * Integer.SIZE + 2];	//more than the height of any WAVL tree
+			private int top = 0;
+			private IntervalNode next;
+
+			{
+				if (lo <= hi) {
+					pushLeft(getRoot());
+					next = advance();
+				}
+			}
+
+			/**
+			 * pushes node and its left descendants, down to the first subtree whose largest end is below lo
+			 */
+			private void pushLeft(WAVLNode node) {
+				while (maxEndOf(node) >= lo) {
+					stack[top++] = node;
+					node = node.getLeft();
+				}
+			}
+
+			private IntervalNode advance() {
+				while (top > 0) {
+					IntervalNode node = (IntervalNode) stack[--top];
+					if (node.getKey() > hi) {			//every later interval starts after hi
+						top = 0;
+						return null;
+					}
+					pushLeft(node.getRight());
+					if (node.end >= lo) {
+						return node;
+					}
+				}
+				return null;
+			}
+
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			public IntervalNode next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				IntervalNode curr = next;
+				next = advance();
+				return curr;
+			}
+		};
+	}
+
+	private static int maxEndOf(WAVLNode node) {
+		return node == null || !node.isInnerNode() ? Integer.MIN_VALUE : ((IntervalNode) node).maxEnd;
+	}
+
+	@Override
+	WAVLNode createNode(int k, String i) {
+		return new IntervalNode(k, i);
+	}
+
+	@Override
+	WAVLTree emptyTree() {
+		return new IntervalWAVLTree();
+	}
+
+	@Override
+	void refreshUpwards(WAVLNode node) {
+		for (; node != null; node = node.getParent()) {
+			node.updateSize();
+		}
+	}
+
+	/**
+	 * public static final class IntervalNode
+	 * a node of an IntervalWAVLTree: its key is the start of its interval
+	 */
+	public static final class IntervalNode extends WAVLNode {
+		private int end;
+		private int maxEnd;		//the largest end in the subtree
+
+		private IntervalNode(int start, String value) {
+			super(start, value);
+			this.end = start;
+			this.maxEnd = start;
+		}
+
+		public int getStart() {
+			return getKey();
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		/**
+		 * updates the size and the largest end of the subtree from those of the children
+		 */
+		@Override
+		public void updateSize() {
+			super.updateSize();
+			if (isInnerNode()) {
+				maxEnd = Math.max(end, Math.max(maxEndOf(getLeft()), maxEndOf(getRight())));
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package struc1;
+
+/**
+ *
+ * LongWAVLTree
+ *
+ * A WAVL Tree with long keys and values of any type. Keys are compared as primitives and never boxed.
+ *
+ */
+public class LongWAVLTree<V> extends AbstractWAVLTree<V, LongWAVLTree.LongNode<V>> {
+
+	/**
+	 * public LongWAVLTree()
+	 * initializes an empty tree
+	 */
+	public LongWAVLTree() {
+		super(new LongNode<V>(0, null));
+	}
+
+	/**
+	 * public V search(long k)
+	 *
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public V search(long k) {
+		if (empty()) {
+			return null;
+		}
+		LongNode<V> node = searchWithNode(k);
+		return node.key == k ? node.value : null;
+	}
+
+	/**
+	 * public LongNode<V> searchWithNode(long k)
+	 * If k is a key in the tree, returns the node with key k
+	 * Otherwise returns the node that should be k's parent. The tree must not be empty
+	 */
+	public LongNode<V> searchWithNode(long k) {
+		LongNode<V> node = root;
+		while (node.key != k) {
+			LongNode<V> next = node.key < k ? node.right : node.left;
+			if (next == external) {
+				return node;
+			}
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * public int insert(long k, V i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(long k, V i) {
+		if (empty()) {
+			return insertNode(null, new LongNode<V>(k, i), false);
+		}
+		LongNode<V> parent = searchWithNode(k);
+		if (parent.key == k) {
+			return -1;
+		}
+		return insertNode(parent, new LongNode<V>(k, i), k < parent.key);
+	}
+
+	/**
+	 * public int delete(long k)
+	 *
+	 * deletes an item with key k from the tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(long k) {
+		if (empty()) {
+			return -1;
+		}
+		LongNode<V> node = searchWithNode(k);
+		if (node.key != k) {
+			return -1;
+		}
+		return deleteNode(node);
+	}
+
+	/**
+	 * public long[] keysToArray()
+	 *
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public long[] keysToArray() {
+		long[] arr = new long[size()];
+		LongNode<V> curr = getMin();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = curr.key;
+			curr = findSuccessor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	 * public static class LongNode
+	 */
+	public static class LongNode<V> extends AbstractWAVLTree.Node<V, LongNode<V>> {
+		private final long key;
+
+		public LongNode(long key, V value) {
+			super(value);
+			this.key = key;
+		}
+
+		public long getKey() {
+			return key;
+		}
+	}
+}
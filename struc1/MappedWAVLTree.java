@@ -0,0 +1,280 @@
+package struc1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * MappedWAVLTree
+ *
+ * A WAVL Tree whose nodes live off-heap, in a file mapped into memory.
+ * Reopening the file gives back the same tree, ready for search and select without re-inserting anything.
+ *
+ * File layout: a header of HEADER_BYTES bytes (see the *_OFFSET constants), followed by fixed size records.
+ * Record i holds key, rank, size, left, right, parent, the length of the value in bytes (-1 for null)
+ * and up to valueBytes bytes of UTF-8 encoded value. Record 0 is the external node.
+ * Changes reach the file when the operating system writes the pages back, or on force()/close().
+ *
+ * The file has a single writer: the tree holds an exclusive lock on it until close(), and opening a file
+ * that another tree (in this or another process) holds fails. The file is not crash-safe. Operations
+ * change the records in place, with no journal, and the pages reach the disk in any order, so a crash
+ * or power loss before force() returns can leave a tree that does not open or is not a valid WAVL tree.
+ *
+ */
+public class MappedWAVLTree extends IndexedWAVLTree implements Closeable {
+	private static final int MAGIC = 0x5741564C;		//"WAVL"
+	private static final int VERSION = 1;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int VALUE_BYTES_OFFSET = 8;
+	private static final int CAPACITY_OFFSET = 12;
+	private static final int USED_OFFSET = 16;
+	private static final int FREE_HEAD_OFFSET = 20;
+	private static final int ROOT_OFFSET = 24;
+	private static final int MIN_OFFSET = 28;
+	private static final int MAX_OFFSET = 32;
+	private static final int HEADER_BYTES = 64;
+
+	private static final int KEY = 0;
+	private static final int RANK = 4;
+	private static final int SIZE = 8;
+	private static final int LEFT = 12;
+	private static final int RIGHT = 16;
+	private static final int PARENT = 20;
+	private static final int VALUE_LENGTH = 24;
+	private static final int VALUE = 28;
+
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final int valueBytes;
+	private final int recordBytes;
+	private MappedByteBuffer buffer;
+
+	/**
+	 * public MappedWAVLTree(Path file, int valueBytes)
+	 * opens the tree stored in file, or creates an empty one if the file is empty or does not exist.
+	 * valueBytes is the maximal length of a UTF-8 encoded value; for an existing file the value it
+	 * was created with is used instead.
+	 * Throws an IOException if another tree holds the file, or if the file is not a complete tree file;
+	 * such a file is left unchanged.
+	 */
+	public MappedWAVLTree(Path file, int valueBytes) throws IOException {
+		if (valueBytes < 0) {
+			throw new IllegalArgumentException("negative value length: " + valueBytes);
+		}
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			lock = lockFile(file);
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		try {
+			if (channel.size() == 0) {
+				this.valueBytes = valueBytes;
+				this.recordBytes = recordBytes(valueBytes);
+				map(DEFAULT_CAPACITY + 1);
+				buffer.putInt(MAGIC_OFFSET, MAGIC);
+				buffer.putInt(VERSION_OFFSET, VERSION);
+				buffer.putInt(VALUE_BYTES_OFFSET, valueBytes);
+				buffer.putInt(CAPACITY_OFFSET, DEFAULT_CAPACITY + 1);
+				buffer.putInt(USED_OFFSET, 1);
+				buffer.putInt(FREE_HEAD_OFFSET, EXTERNAL);
+				buffer.putInt(ROOT_OFFSET, EXTERNAL);
+				buffer.putInt(MIN_OFFSET, EXTERNAL);
+				buffer.putInt(MAX_OFFSET, EXTERNAL);
+				setRank(EXTERNAL, -1);
+				setSubtreeSize(EXTERNAL, 0);
+			}
+			else {
+				ByteBuffer header = readHeader(file);
+				this.valueBytes = header.getInt(VALUE_BYTES_OFFSET);
+				this.recordBytes = recordBytes(this.valueBytes);
+				int capacity = header.getInt(CAPACITY_OFFSET);
+				if (this.valueBytes < 0 || capacity < 1 || channel.size() < HEADER_BYTES + (long) capacity * recordBytes) {
+					throw new IOException(file + " is not a complete WAVL tree file");
+				}
+				map(capacity);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close();		//also releases the lock
+			throw e;
+		}
+	}
+
+	/**
+	 * takes the exclusive lock on the whole file, or throws an IOException if another tree holds it
+	 */
+	private FileLock lockFile(Path file) throws IOException {
+		FileLock fileLock;
+		try {
+			fileLock = channel.tryLock();
+		}
+		catch (OverlappingFileLockException e) {		//held by a tree in this process
+			fileLock = null;
+		}
+		if (fileLock == null) {
+			throw new IOException(file + " is used by another WAVL tree");
+		}
+		return fileLock;
+	}
+
+	/**
+	 * reads the header of a non-empty file with a plain read, so that a file that is not a tree file
+	 * is rejected before anything maps (and so extends) it
+	 */
+	private ByteBuffer readHeader(Path file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		int read = channel.size() >= HEADER_BYTES ? 0 : -1;
+		while (header.hasRemaining() && read >= 0) {
+			read = channel.read(header, header.position());
+		}
+		if (header.hasRemaining() || header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException(file + " is not a WAVL tree file");
+		}
+		return header;
+	}
+
+	private static int recordBytes(int valueBytes) {
+		return (VALUE + valueBytes + 3) & ~3;		//keep records int aligned
+	}
+
+	/**
+	 * maps the header and capacity records, extending the file if needed
+	 */
+	private void map(int capacity) throws IOException {
+		long bytes = HEADER_BYTES + (long) capacity * recordBytes;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("a tree file is limited to " + Integer.MAX_VALUE + " bytes");
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private int offset(int node) {
+		return HEADER_BYTES + node * recordBytes;
+	}
+
+	protected int key(int node) { return buffer.getInt(offset(node) + KEY); }
+	protected void setKey(int node, int key) { buffer.putInt(offset(node) + KEY, key); }
+	protected int rank(int node) { return buffer.getInt(offset(node) + RANK); }
+	protected void setRank(int node, int rank) { buffer.putInt(offset(node) + RANK, rank); }
+	protected int subtreeSize(int node) { return buffer.getInt(offset(node) + SIZE); }
+	protected void setSubtreeSize(int node, int size) { buffer.putInt(offset(node) + SIZE, size); }
+	protected int left(int node) { return buffer.getInt(offset(node) + LEFT); }
+	protected void setLeft(int node, int child) { buffer.putInt(offset(node) + LEFT, child); }
+	protected int right(int node) { return buffer.getInt(offset(node) + RIGHT); }
+	protected void setRight(int node, int child) { buffer.putInt(offset(node) + RIGHT, child); }
+	protected int parent(int node) { return buffer.getInt(offset(node) + PARENT); }
+	protected void setParent(int node, int parent) { buffer.putInt(offset(node) + PARENT, parent); }
+
+	protected int root() { return buffer.getInt(ROOT_OFFSET); }
+	protected void setRoot(int node) { buffer.putInt(ROOT_OFFSET, node); }
+	protected int minNode() { return buffer.getInt(MIN_OFFSET); }
+	protected void setMinNode(int node) { buffer.putInt(MIN_OFFSET, node); }
+	protected int maxNode() { return buffer.getInt(MAX_OFFSET); }
+	protected void setMaxNode(int node) { buffer.putInt(MAX_OFFSET, node); }
+
+	protected String value(int node) {
+		int length = buffer.getInt(offset(node) + VALUE_LENGTH);
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(offset(node) + VALUE, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	protected void setValue(int node, String value) {
+		if (value == null) {
+			buffer.putInt(offset(node) + VALUE_LENGTH, -1);
+			return;
+		}
+		byte[] bytes = encode(value);
+		buffer.putInt(offset(node) + VALUE_LENGTH, bytes.length);
+		buffer.put(offset(node) + VALUE, bytes);
+	}
+
+	private byte[] encode(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > valueBytes) {
+			throw new IllegalArgumentException("value takes " + bytes.length + " bytes, the tree stores at most " + valueBytes);
+		}
+		return bytes;
+	}
+
+	/**
+	 * takes a record from the free list, or the next unused record (growing the file if needed).
+	 * Rejects a value that does not fit before anything in the tree changes.
+	 */
+	protected int allocateSlot(String value) {
+		if (value != null) {
+			encode(value);
+		}
+		int node = buffer.getInt(FREE_HEAD_OFFSET);
+		if (node != EXTERNAL) {
+			buffer.putInt(FREE_HEAD_OFFSET, left(node));
+			return node;
+		}
+		node = buffer.getInt(USED_OFFSET);
+		int capacity = buffer.getInt(CAPACITY_OFFSET);
+		if (node == capacity) {
+			capacity = (int) Math.min(2L * capacity, (Integer.MAX_VALUE - HEADER_BYTES) / recordBytes);
+			if (capacity == node) {
+				throw new IllegalStateException("the tree file is full");
+			}
+			try {
+				map(capacity);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("cannot grow the tree file", e);
+			}
+			buffer.putInt(CAPACITY_OFFSET, capacity);
+		}
+		buffer.putInt(USED_OFFSET, node + 1);
+		return node;
+	}
+
+	/**
+	 * puts a removed record on the free list
+	 */
+	protected void releaseSlot(int node) {
+		setLeft(node, buffer.getInt(FREE_HEAD_OFFSET));
+		buffer.putInt(FREE_HEAD_OFFSET, node);
+	}
+
+	/**
+	 * public void force()
+	 * writes all changes to the file
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * public void close()
+	 * writes all changes to the file, releases the lock on it and closes it. The tree must not be used afterwards
+	 */
+	public void close() throws IOException {
+		try {
+			force();
+			lock.release();
+		}
+		finally {
+			channel.close();
+		}
+	}
+}
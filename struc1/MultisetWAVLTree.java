@@ -0,0 +1,279 @@
+package struc1;
+
+import java.util.Arrays;
+
+import struc1.WAVLTree.WAVLNode;
+
+/**
+ *
+ * MultisetWAVLTree
+ *
+ * A WAVLTree that keeps every item inserted with a key that is already there, instead of rejecting it.
+ * A key has one node, which holds the number of its occurrences and their infos in insertion order,
+ * and every node also keeps the number of occurrences in its subtree. select, rank and countRange
+ * count occurrences, and totalCount() returns their number.
+ *
+ * size(), keysToArray() and the iterators still see one node per key, and search returns the first info
+ * of a key. delete(k) removes a key with all its occurrences, remove(k) only its last one.
+ * join, split and the set operations also work per key: union and intersect keep this tree's
+ * occurrences of a key that both trees have.
+ * deleteAll removes keys with all their occurrences, and the nodes of the other keys keep theirs.
+ * freeze() also works per key: the frozen copy has one item per key, with its first info, and its
+ * select and rank count keys, not occurrences.
+ *
+ */
+public class MultisetWAVLTree extends WAVLTree {
+
+	/**
+	 * public MultisetWAVLTree()
+	 * initializes an empty tree
+	 */
+	public MultisetWAVLTree() {
+		super();
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 *
+	 * adds an occurrence of k with info i.
+	 * returns the number of rebalancing operations, which is 0 if k was already in the tree
+	 */
+	@Override
+	public int insert(int k, String i) {
+		if (!empty()) {
+			WAVLNode node = searchWithNode(getRoot(), k);
+			if (node.getKey() == k) {
+				((MultiNode) node).add(i);
+				refreshUpwards(node);
+				return 0;
+			}
+		}
+		return super.insert(k, i);
+	}
+
+	/**
+	 * public int insertAll(int[] keys, String[] values)
+	 *
+	 * adds an occurrence of keys[j] with info values[j] for every j, in order.
+	 * returns the total number of rebalancing operations
+	 */
+	@Override
+	public int insertAll(int[] keys, String[] values) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("got " + keys.length + " keys but " + values.length + " values");
+		}
+		int count = 0;
+		for (int j = 0; j < keys.length; j++) {
+			count += insert(keys[j], values[j]);
+		}
+		return count;
+	}
+
+	/**
+	 * public int remove(int k)
+	 *
+	 * removes the last occurrence of k that was added.
+	 * returns the number of rebalancing operations, which is 0 if k had other occurrences.
+	 * returns -1 if k is not in the tree
+	 */
+	public int remove(int k) {
+		if (empty()) {
+			return -1;
+		}
+		WAVLNode node = searchWithNode(getRoot(), k);
+		if (node.getKey() != k) {
+			return -1;
+		}
+		MultiNode multi = (MultiNode) node;
+		if (multi.count == 1) {
+			return delete(k);
+		}
+		multi.removeLast();
+		refreshUpwards(node);
+		return 0;
+	}
+
+	/**
+	 * public int count(int k)
+	 * returns the number of occurrences of k
+	 */
+	public int count(int k) {
+		if (empty()) {
+			return 0;
+		}
+		WAVLNode node = searchWithNode(getRoot(), k);
+		return node.getKey() == k ? ((MultiNode) node).count : 0;
+	}
+
+	/**
+	 * public String[] values(int k)
+	 * returns the infos of the occurrences of k in insertion order, or an empty array if k is not in the tree
+	 */
+	public String[] values(int k) {
+		if (empty()) {
+			return new String[0];
+		}
+		WAVLNode node = searchWithNode(getRoot(), k);
+		return node.getKey() == k ? ((MultiNode) node).values() : new String[0];
+	}
+
+	/**
+	 * public int totalCount()
+	 * returns the number of occurrences of all keys
+	 */
+	public int totalCount() {
+		return weightOf(getRoot());
+	}
+
+	/**
+	 * public String select(int i)
+	 *
+	 * returns the info of the i'th smallest occurrence (counting from 1), or null if there is none.
+	 * The occurrences of a key are ordered by insertion
+	 */
+	@Override
+	public String select(int i) {
+		if (i > totalCount() || i <= 0) {
+			return null;
+		}
+		i--;
+		WAVLNode node = getRoot();
+		while (true) {
+			int below = weightOf(node.getLeft());
+			int count = ((MultiNode) node).count;
+			if (i < below) {
+				node = node.getLeft();
+			}
+			else if (i < below + count) {
+				return ((MultiNode) node).valueAt(i - below);
+			}
+			else {
+				i -= below + count;
+				node = node.getRight();
+			}
+		}
+	}
+
+	/**
+	 * public int rank(int k)
+	 *
+	 * returns the number of occurrences of keys smaller than or equal to k.
+	 * If k is in the tree, select(rank(k)) returns the info of its last occurrence
+	 */
+	@Override
+	public int rank(int k) {
+		return weightBelow(k, true);
+	}
+
+	/**
+	 * public int countRange(int lo, int hi)
+	 * returns the number of occurrences of keys k with lo <= k <= hi
+	 */
+	@Override
+	public int countRange(int lo, int hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		return weightBelow(hi, true) - weightBelow(lo, false);
+	}
+
+	/**
+	 * returns the number of occurrences of keys smaller than k (or equal to k, if inclusive)
+	 */
+	private int weightBelow(int k, boolean inclusive) {
+		int count = 0;
+		WAVLNode node = getRoot();
+		while (node != null && node.isInnerNode()) {
+			if (node.getKey() < k || (inclusive && node.getKey() == k)) {
+				count += weightOf(node.getLeft()) + ((MultiNode) node).count;
+				if (node.getKey() == k) {
+					break;
+				}
+				node = node.getRight();
+			}
+			else {
+				node = node.getLeft();
+			}
+		}
+		return count;
+	}
+
+	private static int weightOf(WAVLNode node) {
+		return node == null || !node.isInnerNode() ? 0 : ((MultiNode) node).weight;
+	}
+
+	@Override
+	WAVLNode createNode(int k, String i) {
+		return new MultiNode(k, i);
+	}
+
+	@Override
+	WAVLTree emptyTree() {
+		return new MultisetWAVLTree();
+	}
+
+	@Override
+	void refreshUpwards(WAVLNode node) {
+		for (; node != null; node = node.getParent()) {
+			node.updateSize();
+		}
+	}
+
+	/**
+	 * a node with the occurrences of one key. The first info is the node's value, the others are kept in more
+	 */
+	private static final class MultiNode extends WAVLNode {
+		private String[] more;		//null while the key has one occurrence
+		private int count;
+		private int weight;			//the number of occurrences in the subtree
+
+		MultiNode(int key, String value) {
+			super(key, value);
+			this.count = 1;
+			this.weight = 1;
+		}
+
+		void add(String value) {
+			if (more == null) {
+				more = new String[2];
+			}
+			else if (count - 1 == more.length) {
+				more = Arrays.copyOf(more, 2 * more.length);
+			}
+			more[count - 1] = value;
+			count++;
+		}
+
+		void removeLast() {
+			count--;
+			more[count - 1] = null;
+			if (count == 1) {
+				more = null;
+			}
+		}
+
+		String valueAt(int index) {
+			return index == 0 ? getValue() : more[index - 1];
+		}
+
+		String[] values() {
+			String[] arr = new String[count];
+			arr[0] = getValue();
+			if (more != null) {
+				System.arraycopy(more, 0, arr, 1, count - 1);
+			}
+			return arr;
+		}
+
+		/**
+		 * updates the size and the number of occurrences of the subtree from those of the children
+		 */
+		@Override
+		public void updateSize() {
+			super.updateSize();
+			if (isInnerNode()) {
+				weight = count + weightOf(getLeft()) + weightOf(getRight());
+			}
+		}
+	}
+}
@@ -0,0 +1,415 @@
+package struc1;
+
+/**
+ *
+ * PersistentWAVLTree
+ *
+ * A WAVL Tree with the API of WAVLTree whose nodes are never changed once published.
+ * insert and delete copy the path from the root to the change (path copying) and publish the
+ * new root through a volatile field, so any number of readers can search, select and list keys
+ * without locks while one writer at a time modifies the tree. A reader that needs several
+ * operations on the same version of the tree takes a snapshot().
+ *
+ */
+public class PersistentWAVLTree {
+	private volatile Node root;
+	private int count;		//rebalancing operations of the current write, guarded by this
+
+	/**
+	 * public PersistentWAVLTree()
+	 * initializes an empty tree
+	 */
+	public PersistentWAVLTree() {
+		this.root = null;
+	}
+
+	/**
+	 * public Snapshot snapshot()
+	 * returns the current version of the tree. Later changes to the tree do not affect it
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(root);
+	}
+
+	public boolean empty() {
+		return root == null;
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	public String search(int k) {
+		return search(root, k);
+	}
+
+	public String select(int i) {
+		return select(root, i);
+	}
+
+	public String min() {
+		return min(root);
+	}
+
+	public String max() {
+		return max(root);
+	}
+
+	public int[] keysToArray() {
+		return keysToArray(root);
+	}
+
+	public String[] infoToArray() {
+		return infoToArray(root);
+	}
+
+	/**
+	 * public synchronized int insert(int k, String i)
+	 *
+	 * inserts an item with key k and info i to the WAVL tree and publishes the new version.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public synchronized int insert(int k, String i) {
+		count = 0;
+		Node current = root;
+		Node updated = insert(current, k, i);
+		if (updated == current) {		//key already in tree
+			return -1;
+		}
+		root = updated;
+		return count;
+	}
+
+	/**
+	 * public synchronized int delete(int k)
+	 *
+	 * deletes an item with key k from the tree, if it is there, and publishes the new version.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public synchronized int delete(int k) {
+		count = 0;
+		Node current = root;
+		Node updated = delete(current, k);
+		if (updated == current) {		//key is not in the tree
+			return -1;
+		}
+		root = updated;
+		return count;
+	}
+
+	/**
+	 * returns a copy of node's subtree with k inserted, or node itself if k is already there
+	 */
+	private Node insert(Node node, int k, String i) {
+		if (node == null) {
+			return new Node(k, i, 0, null, null);
+		}
+		if (k == node.key) {
+			return node;
+		}
+		if (k < node.key) {
+			Node left = insert(node.left, k, i);
+			if (left == node.left) {
+				return node;
+			}
+			int step = WAVLRules.insertStep(node.rank - left.rank, node.rank - rank(node.right));
+			if (step == WAVLRules.DONE || step == WAVLRules.PROMOTE) {
+				count += WAVLRules.cost(step);
+				return new Node(node.key, node.value, node.rank + WAVLRules.nodeDelta(step, false), left, node.right);
+			}
+			step = WAVLRules.insertRotation(left.rank - rank(left.left));
+			count += WAVLRules.cost(step);
+			int rank = node.rank + WAVLRules.nodeDelta(step, false);
+			int childRank = left.rank + WAVLRules.childDelta(step);
+			if (step == WAVLRules.ROTATE) {
+				Node demoted = new Node(node.key, node.value, rank, left.right, node.right);
+				return new Node(left.key, left.value, childRank, left.left, demoted);
+			}
+			Node middle = left.right;
+			Node newLeft = new Node(left.key, left.value, childRank, left.left, middle.left);
+			Node newRight = new Node(node.key, node.value, rank, middle.right, node.right);
+			return new Node(middle.key, middle.value, middle.rank + WAVLRules.grandChildDelta(step), newLeft, newRight);
+		}
+		Node right = insert(node.right, k, i);
+		if (right == node.right) {
+			return node;
+		}
+		int step = WAVLRules.insertStep(node.rank - rank(node.left), node.rank - right.rank);
+		if (step == WAVLRules.DONE || step == WAVLRules.PROMOTE) {
+			count += WAVLRules.cost(step);
+			return new Node(node.key, node.value, node.rank + WAVLRules.nodeDelta(step, false), node.left, right);
+		}
+		step = WAVLRules.insertRotation(right.rank - rank(right.right));
+		count += WAVLRules.cost(step);
+		int rank = node.rank + WAVLRules.nodeDelta(step, false);
+		int childRank = right.rank + WAVLRules.childDelta(step);
+		if (step == WAVLRules.ROTATE) {
+			Node demoted = new Node(node.key, node.value, rank, node.left, right.left);
+			return new Node(right.key, right.value, childRank, demoted, right.right);
+		}
+		Node middle = right.left;
+		Node newLeft = new Node(node.key, node.value, rank, node.left, middle.left);
+		Node newRight = new Node(right.key, right.value, childRank, middle.right, right.right);
+		return new Node(middle.key, middle.value, middle.rank + WAVLRules.grandChildDelta(step), newLeft, newRight);
+	}
+
+	/**
+	 * returns a copy of node's subtree without k, or node itself if k is not there
+	 */
+	private Node delete(Node node, int k) {
+		if (node == null) {
+			return null;
+		}
+		if (k < node.key) {
+			Node left = delete(node.left, k);
+			if (left == node.left) {
+				return node;
+			}
+			return afterLeftDelete(node.key, node.value, node.rank, left, node.right);
+		}
+		if (k > node.key) {
+			Node right = delete(node.right, k);
+			if (right == node.right) {
+				return node;
+			}
+			return afterRightDelete(node.key, node.value, node.rank, node.left, right);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node succ = node.right;			//node takes the item of its successor
+		while (succ.left != null) {
+			succ = succ.left;
+		}
+		return afterRightDelete(succ.key, succ.value, node.rank, node.left, deleteMin(node.right));
+	}
+
+	/**
+	 * returns a copy of node's subtree without its minimal item
+	 */
+	private Node deleteMin(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return afterLeftDelete(node.key, node.value, node.rank, deleteMin(node.left), node.right);
+	}
+
+	/**
+	 * returns a valid node with the given item, rank and children, after a deletion in the left subtree
+	 */
+	private Node afterLeftDelete(int key, String value, int rank, Node left, Node right) {
+		boolean leaf = left == null && right == null;
+		int step = WAVLRules.deleteStep(leaf, rank - rank(left), rank - rank(right));
+		if (step == WAVLRules.DELETE_ROTATE) {
+			step = WAVLRules.deleteRotation(right.rank - rank(right.left), right.rank - rank(right.right));
+		}
+		count += WAVLRules.cost(step);
+		int childRank = right == null ? -1 : right.rank + WAVLRules.childDelta(step);
+		if (step == WAVLRules.DELETE_ROTATE) {
+			int newRank = rank + WAVLRules.nodeDelta(step, left == null && right.left == null);
+			Node demoted = new Node(key, value, newRank, left, right.left);
+			return new Node(right.key, right.value, childRank, demoted, right.right);
+		}
+		if (step == WAVLRules.DELETE_DOUBLE_ROTATE) {
+			Node middle = right.left;
+			Node newLeft = new Node(key, value, rank + WAVLRules.nodeDelta(step, false), left, middle.left);
+			Node newRight = new Node(right.key, right.value, childRank, middle.right, right.right);
+			return new Node(middle.key, middle.value, middle.rank + WAVLRules.grandChildDelta(step), newLeft, newRight);
+		}
+		if (step == WAVLRules.DOUBLE_DEMOTE) {
+			right = new Node(right.key, right.value, childRank, right.left, right.right);
+		}
+		return new Node(key, value, rank + WAVLRules.nodeDelta(step, leaf), left, right);
+	}
+
+	/**
+	 * returns a valid node with the given item, rank and children, after a deletion in the right subtree
+	 */
+	private Node afterRightDelete(int key, String value, int rank, Node left, Node right) {
+		boolean leaf = left == null && right == null;
+		int step = WAVLRules.deleteStep(leaf, rank - rank(left), rank - rank(right));
+		if (step == WAVLRules.DELETE_ROTATE) {
+			step = WAVLRules.deleteRotation(left.rank - rank(left.right), left.rank - rank(left.left));
+		}
+		count += WAVLRules.cost(step);
+		int childRank = left == null ? -1 : left.rank + WAVLRules.childDelta(step);
+		if (step == WAVLRules.DELETE_ROTATE) {
+			int newRank = rank + WAVLRules.nodeDelta(step, right == null && left.right == null);
+			Node demoted = new Node(key, value, newRank, left.right, right);
+			return new Node(left.key, left.value, childRank, left.left, demoted);
+		}
+		if (step == WAVLRules.DELETE_DOUBLE_ROTATE) {
+			Node middle = left.right;
+			Node newLeft = new Node(left.key, left.value, childRank, left.left, middle.left);
+			Node newRight = new Node(key, value, rank + WAVLRules.nodeDelta(step, false), middle.right, right);
+			return new Node(middle.key, middle.value, middle.rank + WAVLRules.grandChildDelta(step), newLeft, newRight);
+		}
+		if (step == WAVLRules.DOUBLE_DEMOTE) {
+			left = new Node(left.key, left.value, childRank, left.left, left.right);
+		}
+		return new Node(key, value, rank + WAVLRules.nodeDelta(step, leaf), left, right);
+	}
+
+	private static int rank(Node node) {
+		return node == null ? -1 : node.rank;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static String search(Node node, int k) {
+		while (node != null) {
+			if (k == node.key) {
+				return node.value;
+			}
+			node = k < node.key ? node.left : node.right;
+		}
+		return null;
+	}
+
+	private static String select(Node node, int i) {
+		if (i > size(node) || i <= 0) {
+			return null;
+		}
+		i--;
+		int r = size(node.left);
+		while (r != i) {
+			if (r > i) {
+				node = node.left;
+			}
+			else {
+				i -= r + 1;
+				node = node.right;
+			}
+			r = size(node.left);
+		}
+		return node.value;
+	}
+
+	private static String min(Node node) {
+		if (node == null) {
+			return null;
+		}
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node.value;
+	}
+
+	private static String max(Node node) {
+		if (node == null) {
+			return null;
+		}
+		while (node.right != null) {
+			node = node.right;
+		}
+		return node.value;
+	}
+
+	private static int[] keysToArray(Node root) {
+		int[] arr = new int[size(root)];
+		int i = 0;
+		Node[] stack = new Node[rank(root) + 2];		//the height of a WAVL tree is at most its rank
+		int top = 0;
+		Node node = root;
+		while (node != null || top > 0) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			arr[i++] = node.key;
+			node = node.right;
+		}
+		return arr;
+	}
+
+	private static String[] infoToArray(Node root) {
+		String[] arr = new String[size(root)];
+		int i = 0;
+		Node[] stack = new Node[rank(root) + 2];
+		int top = 0;
+		Node node = root;
+		while (node != null || top > 0) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			arr[i++] = node.value;
+			node = node.right;
+		}
+		return arr;
+	}
+
+	/**
+	 * public static class Snapshot
+	 * one version of a PersistentWAVLTree. It never changes, and may be read by any number of threads
+	 */
+	public static class Snapshot {
+		private final Node root;
+
+		private Snapshot(Node root) {
+			this.root = root;
+		}
+
+		public boolean empty() {
+			return root == null;
+		}
+
+		public int size() {
+			return PersistentWAVLTree.size(root);
+		}
+
+		public String search(int k) {
+			return PersistentWAVLTree.search(root, k);
+		}
+
+		public String select(int i) {
+			return PersistentWAVLTree.select(root, i);
+		}
+
+		public String min() {
+			return PersistentWAVLTree.min(root);
+		}
+
+		public String max() {
+			return PersistentWAVLTree.max(root);
+		}
+
+		public int[] keysToArray() {
+			return PersistentWAVLTree.keysToArray(root);
+		}
+
+		public String[] infoToArray() {
+			return PersistentWAVLTree.infoToArray(root);
+		}
+	}
+
+	/**
+	 * an immutable node; null stands for an external node
+	 */
+	private static final class Node {
+		final int key;
+		final String value;
+		final int rank;
+		final int size;
+		final Node left;
+		final Node right;
+
+		Node(int key, String value, int rank, Node left, Node right) {
+			this.key = key;
+			this.value = value;
+			this.rank = rank;
+			this.left = left;
+			this.right = right;
+			this.size = 1 + PersistentWAVLTree.size(left) + PersistentWAVLTree.size(right);
+		}
+	}
+}
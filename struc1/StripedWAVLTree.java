@@ -0,0 +1,378 @@
+package struc1;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+import struc1.WAVLTree.WAVLNode;
+
+/**
+ *
+ * StripedWAVLTree
+ *
+ * A thread safe map from int keys to String values, hash partitioned over WAVL Trees.
+ * This is lock striping, not a concurrent search tree: keys are hashed to stripes, and every stripe
+ * is a whole WAVLTree guarded by its own StampedLock, so writers of different stripes never wait for
+ * each other. Hashing spreads any key set, including runs of close keys, evenly over the stripes.
+ * Readers do not lock: they walk the stripe optimistically, at most MAX_STEPS levels deep, checking
+ * every link before they follow it, and keep the result only if the stripe's version stamp did not
+ * change meanwhile. Otherwise they retry under the read lock.
+ *
+ * Only the operations on one key are atomic. Hashing gives up the order between stripes, so the ordered
+ * methods (firstKey, lastKey, floorKey and the others) ask every stripe in O(stripes * log n) time,
+ * and keysToArray merges the stripes in O(n log stripes). They lock one stripe at a time, like the bulk
+ * methods of java.util.concurrent maps, and so does size(): under concurrent changes their answers
+ * need not match any single state of the map. Where ordered queries must be atomic or cheap,
+ * use ConcurrentSkipListMap.
+ *
+ */
+public class StripedWAVLTree {
+	private static final int MIN_STRIPES = 16;
+	private static final int MAX_STRIPES = 1 << 16;
+	private static final int MAX_STEPS = 2 * Integer.SIZE + 2;	//more than the height of any WAVL tree
+	private static final long RETRY = Long.MIN_VALUE;
+	private static final long NOT_FOUND = Long.MAX_VALUE;
+
+	private final WAVLTree[] trees;
+	private final StampedLock[] locks;
+	private final int mask;
+
+	/**
+	 * public StripedWAVLTree()
+	 * initializes an empty tree with four stripes per available processor, and at least MIN_STRIPES
+	 */
+	public StripedWAVLTree() {
+		this(Math.max(MIN_STRIPES, 4 * Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * public StripedWAVLTree(int stripes)
+	 * initializes an empty tree with at least stripes stripes; the count is rounded up to a power of two.
+	 * More stripes let more writers work at once but make the ordered methods slower
+	 */
+	public StripedWAVLTree(int stripes) {
+		if (stripes <= 0 || stripes > MAX_STRIPES) {
+			throw new IllegalArgumentException("bad stripe count " + stripes);
+		}
+		stripes = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+		this.mask = stripes - 1;
+		this.trees = new WAVLTree[stripes];
+		this.locks = new StampedLock[stripes];
+		for (int s = 0; s < stripes; s++) {
+			trees[s] = new WAVLTree();
+			locks[s] = new StampedLock();
+		}
+	}
+
+	/**
+	 * mixes the bits of k (by the multiplier of Fibonacci hashing) so that close keys land in different stripes
+	 */
+	private int stripe(int k) {
+		int h = k * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * public String get(int k)
+	 * returns the info of the item with key k, or null if there is none
+	 */
+	public String get(int k) {
+		int s = stripe(k);
+		StampedLock lock = locks[s];
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			WAVLNode node = trees[s].getRoot();
+			int step = 0;
+			while (node != null && node.isInnerNode() && node.getKey() != k && ++step <= MAX_STEPS) {
+				node = node.getKey() < k ? node.getRight() : node.getLeft();
+			}
+			String value = node != null && node.isInnerNode() ? node.getValue() : null;
+			if (step <= MAX_STEPS && lock.validate(stamp)) {
+				return value;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return trees[s].search(k);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public boolean containsKey(int k)
+	 */
+	public boolean containsKey(int k) {
+		return get(k) != null;
+	}
+
+	/**
+	 * public String putIfAbsent(int k, String i)
+	 * inserts the item (k, i) unless k is already in the tree.
+	 * returns the info already stored with k, or null if the item was inserted
+	 */
+	public String putIfAbsent(int k, String i) {
+		if (i == null) {
+			throw new NullPointerException();
+		}
+		int s = stripe(k);
+		long stamp = locks[s].writeLock();
+		try {
+			String old = trees[s].search(k);
+			if (old == null) {
+				trees[s].insert(k, i);
+			}
+			return old;
+		}
+		finally {
+			locks[s].unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public String put(int k, String i)
+	 * stores the item (k, i), replacing the info of an item with key k if there is one.
+	 * returns the replaced info, or null if there was none
+	 */
+	public String put(int k, String i) {
+		if (i == null) {
+			throw new NullPointerException();
+		}
+		int s = stripe(k);
+		long stamp = locks[s].writeLock();
+		try {
+			String old = trees[s].update(k, i);		//in place, if k is there
+			if (old == null) {
+				trees[s].insert(k, i);
+			}
+			return old;
+		}
+		finally {
+			locks[s].unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public String remove(int k)
+	 * deletes the item with key k, if it is there.
+	 * returns its info, or null if there was no such item
+	 */
+	public String remove(int k) {
+		int s = stripe(k);
+		long stamp = locks[s].writeLock();
+		try {
+			String old = trees[s].search(k);
+			if (old != null) {
+				trees[s].delete(k);
+			}
+			return old;
+		}
+		finally {
+			locks[s].unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public int size()
+	 * returns the number of items; concurrent changes may or may not be counted
+	 */
+	public int size() {
+		int size = 0;
+		for (int s = 0; s < trees.length; s++) {
+			StampedLock lock = locks[s];
+			long stamp = lock.tryOptimisticRead();
+			int stripeSize = trees[s].size();
+			if (!lock.validate(stamp)) {
+				stamp = lock.readLock();
+				try {
+					stripeSize = trees[s].size();
+				}
+				finally {
+					lock.unlockRead(stamp);
+				}
+			}
+			size += stripeSize;
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		for (int s = 0; s < trees.length; s++) {
+			long stamp = locks[s].readLock();
+			try {
+				if (!trees[s].empty()) {
+					return false;
+				}
+			}
+			finally {
+				locks[s].unlockRead(stamp);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * public int firstKey()
+	 * returns the smallest key, or throws NoSuchElementException if the tree is empty
+	 */
+	public int firstKey() {
+		return (int) extremeKey(false);
+	}
+
+	/**
+	 * public int lastKey()
+	 * returns the largest key, or throws NoSuchElementException if the tree is empty
+	 */
+	public int lastKey() {
+		return (int) extremeKey(true);
+	}
+
+	/**
+	 * returns the smallest (or, if largest, the largest) of the stripes' minimum (maximum) keys
+	 */
+	private long extremeKey(boolean largest) {
+		long best = NOT_FOUND;
+		for (int s = 0; s < trees.length; s++) {
+			long stamp = locks[s].readLock();
+			try {
+				if (!trees[s].empty()) {
+					int key = largest ? trees[s].getMax().getKey() : trees[s].getMin().getKey();
+					if (best == NOT_FOUND || (largest ? key > best : key < best)) {
+						best = key;
+					}
+				}
+			}
+			finally {
+				locks[s].unlockRead(stamp);
+			}
+		}
+		if (best == NOT_FOUND) {
+			throw new NoSuchElementException();
+		}
+		return best;
+	}
+
+	/**
+	 * public Integer floorKey(int k)
+	 * returns the largest key smaller than or equal to k, or null if there is none
+	 */
+	public Integer floorKey(int k) {
+		return boundKey(k, true, true);
+	}
+
+	/**
+	 * public Integer lowerKey(int k)
+	 * returns the largest key strictly smaller than k, or null if there is none
+	 */
+	public Integer lowerKey(int k) {
+		return boundKey(k, true, false);
+	}
+
+	/**
+	 * public Integer ceilingKey(int k)
+	 * returns the smallest key larger than or equal to k, or null if there is none
+	 */
+	public Integer ceilingKey(int k) {
+		return boundKey(k, false, true);
+	}
+
+	/**
+	 * public Integer higherKey(int k)
+	 * returns the smallest key strictly larger than k, or null if there is none
+	 */
+	public Integer higherKey(int k) {
+		return boundKey(k, false, false);
+	}
+
+	/**
+	 * looks for the closest key below (or above) k in every stripe and returns the closest of them
+	 */
+	private Integer boundKey(int k, boolean below, boolean inclusive) {
+		long best = NOT_FOUND;
+		for (int s = 0; s < trees.length; s++) {
+			long found = boundInStripe(s, k, below, inclusive);
+			if (found != NOT_FOUND && (best == NOT_FOUND || (below ? found > best : found < best))) {
+				best = found;
+			}
+		}
+		return best == NOT_FOUND ? null : (int) best;
+	}
+
+	private long boundInStripe(int s, int k, boolean below, boolean inclusive) {
+		StampedLock lock = locks[s];
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			long found = probeBound(trees[s], k, below, inclusive);
+			if (found != RETRY && lock.validate(stamp)) {
+				return found;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return probeBound(trees[s], k, below, inclusive);
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * one descent that remembers the best candidate seen so far. Every link is checked before it is
+	 * followed, so a descent of a tree that changes under it ends without exceptions.
+	 * returns the key found, NOT_FOUND, or RETRY if the descent ran longer than any WAVL tree is high
+	 */
+	private static long probeBound(WAVLTree tree, int k, boolean below, boolean inclusive) {
+		long best = NOT_FOUND;
+		WAVLNode node = tree.getRoot();
+		int step = 0;
+		while (node != null && node.isInnerNode()) {
+			if (++step > MAX_STEPS) {
+				return RETRY;
+			}
+			int key = node.getKey();
+			boolean fits = below ? (key < k || (inclusive && key == k)) : (key > k || (inclusive && key == k));
+			if (fits) {
+				best = key;
+				if (key == k) {
+					break;
+				}
+			}
+			node = key < k || (key == k && !below) ? node.getRight() : node.getLeft();
+		}
+		return best;
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * returns the keys in ascending order, taking one stripe at a time and merging the stripes pairwise
+	 */
+	public int[] keysToArray() {
+		int[][] parts = new int[trees.length][];
+		for (int s = 0; s < trees.length; s++) {
+			long stamp = locks[s].readLock();
+			try {
+				parts[s] = trees[s].keysToArray();
+			}
+			finally {
+				locks[s].unlockRead(stamp);
+			}
+		}
+		for (int width = 1; width < parts.length; width *= 2) {		//the stripe count is a power of two
+			for (int s = 0; s < parts.length; s += 2 * width) {
+				parts[s] = merge(parts[s], parts[s + width]);
+			}
+		}
+		return parts[0];
+	}
+
+	private static int[] merge(int[] a, int[] b) {
+		int[] arr = new int[a.length + b.length];
+		int i = 0, j = 0, at = 0;
+		while (i < a.length && j < b.length) {
+			arr[at++] = a[i] < b[j] ? a[i++] : b[j++];
+		}
+		System.arraycopy(a, i, arr, at, a.length - i);
+		System.arraycopy(b, j, arr, at + a.length - i, b.length - j);
+		return arr;
+	}
+}
@@ -0,0 +1,91 @@
+package struc1;
+
+import java.util.Comparator;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ *
+ * WAVLAggregate
+ *
+ * A monoid of summaries of tree items, kept for every subtree by AggregateWAVLTree.
+ * combine must be associative and identity must be its neutral element; combine need not be commutative,
+ * as it is always called with the summary of the smaller keys first.
+ *
+ */
+public interface WAVLAggregate<A> {
+
+	/**
+	 * returns the summary of no items
+	 */
+	A identity();
+
+	/**
+	 * returns the summary of the single item (key, value)
+	 */
+	A of(int key, String value);
+
+	/**
+	 * returns the summary of the items summarized by left followed by those summarized by right
+	 */
+	A combine(A left, A right);
+
+	/**
+	 * public static WAVLAggregate<Long> sum(ToLongFunction<String> weight)
+	 * sums weight over the values
+	 */
+	public static WAVLAggregate<Long> sum(ToLongFunction<String> weight) {
+		return new WAVLAggregate<Long>() {
+			public Long identity() {
+				return 0L;
+			}
+
+			public Long of(int key, String value) {
+				return weight.applyAsLong(value);
+			}
+
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		};
+	}
+
+	/**
+	 * public static WAVLAggregate<Long> count(Predicate<String> predicate)
+	 * counts the values that satisfy predicate
+	 */
+	public static WAVLAggregate<Long> count(Predicate<String> predicate) {
+		return sum(value -> predicate.test(value) ? 1 : 0);
+	}
+
+	/**
+	 * public static WAVLAggregate<String> min(Comparator<String> comparator)
+	 * keeps the smallest value by comparator (null for no items)
+	 */
+	public static WAVLAggregate<String> min(Comparator<String> comparator) {
+		return new WAVLAggregate<String>() {
+			public String identity() {
+				return null;
+			}
+
+			public String of(int key, String value) {
+				return value;
+			}
+
+			public String combine(String left, String right) {
+				if (left == null || right == null) {
+					return left == null ? right : left;
+				}
+				return comparator.compare(right, left) < 0 ? right : left;
+			}
+		};
+	}
+
+	/**
+	 * public static WAVLAggregate<String> max(Comparator<String> comparator)
+	 * keeps the largest value by comparator (null for no items)
+	 */
+	public static WAVLAggregate<String> max(Comparator<String> comparator) {
+		return min(comparator.reversed());
+	}
+}
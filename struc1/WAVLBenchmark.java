@@ -0,0 +1,497 @@
+package struc1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ *
+ * WAVLBenchmark
+ *
+ * Reproduces the timings quoted for the trees of this package. Run it with the name of a benchmark,
+ * or with no argument to run them all:
+ *
+ *   java -Xms2g -Xmx2g struc1.WAVLBenchmark recursive
+ *
+ * -Dn sets the number of items (default 1 << 20), and -Dmillis the length of each thread count's run in
+ * the concurrent benchmark. The others time the best of RUNS passes over QUERIES random queries.
+ * Every benchmark warms up on the same work before it is timed, and prints one line per measurement.
+ *
+ * This is a plain main method rather than a JMH harness: the package has no build to pull JMH in.
+ * So every benchmark runs in the JVM that started it, with no forks, and a volatile sink instead of a
+ * Blackhole keeps the measured work alive. The best of RUNS passes hides noise rather than reporting it,
+ * so the numbers are comparisons between lines of one run, not absolute figures to compare across machines.
+ *
+ */
+public class WAVLBenchmark {
+	private static final int N = Integer.getInteger("n", 1 << 20);
+	private static final int MILLIS = Integer.getInteger("millis", 1000);
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+	private static final int QUERIES = 1 << 20;
+	private static final int WARMUPS = 3;
+	private static final int RUNS = 5;
+	private static volatile long sink;		//keeps the JIT from dropping the measured work
+
+	public static void main(String[] args) throws InterruptedException {
+		String which = args.length > 0 ? args[0] : "all";
+		boolean all = which.equals("all");
+		boolean ran = false;
+		if (all || which.equals("recursive")) {
+			recursive();
+			ran = true;
+		}
+		if (all || which.equals("primitive")) {
+			primitive();
+			ran = true;
+		}
+		if (all || which.equals("maps")) {
+			maps();
+			ran = true;
+		}
+		if (all || which.equals("frozen")) {
+			frozen();
+			ran = true;
+		}
+		if (all || which.equals("concurrent")) {
+			concurrent();
+			ran = true;
+		}
+		if (!ran) {
+			System.out.println("unknown benchmark " + which + "; use recursive, primitive, maps, frozen, concurrent or all");
+		}
+	}
+
+	private interface Work {
+		/**
+		 * does the measured work once and returns a checksum of its results
+		 */
+		long run();
+	}
+
+	/**
+	 * runs work WARMUPS times, then RUNS timed times, and returns the millions of operations per second
+	 * of the fastest timed run, where one run does ops operations
+	 */
+	private static double measure(Work work, int ops) {
+		for (int i = 0; i < WARMUPS; i++) {
+			sink += work.run();
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long begin = System.nanoTime();
+			sink += work.run();
+			best = Math.min(best, System.nanoTime() - begin);
+		}
+		return ops * 1000.0 / best;
+	}
+
+	/**
+	 * returns the ints 0, step, 2 * step, ... (n of them) in random order
+	 */
+	private static int[] shuffledKeys(int n, int step, SplittableRandom random) {
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i * step;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = keys[i];
+			keys[i] = keys[j];
+			keys[j] = swap;
+		}
+		return keys;
+	}
+
+	/**
+	 * returns QUERIES random ints in [0, bound)
+	 */
+	private static int[] queries(int bound, SplittableRandom random) {
+		int[] queries = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			queries[i] = random.nextInt(bound);
+		}
+		return queries;
+	}
+
+	/**
+	 * the iterative searchWithNode and selectNode of WAVLTree against copies of the recursive versions
+	 * they replaced, on a tree of n keys built by random inserts. Half of the searched keys are missing
+	 */
+	private static void recursive() {
+		SplittableRandom random = new SplittableRandom(3);
+		WAVLTree tree = new WAVLTree();
+		for (int k : shuffledKeys(N, 2, random)) {
+			tree.insert(k, "v");
+		}
+		int[] keys = queries(2 * N, random);
+		int[] ranks = queries(N, random);
+		double searchLoop = measure(() -> {
+			long hits = 0;
+			for (int k : keys) {
+				hits += tree.searchWithNode(tree.getRoot(), k).getKey() == k ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		double searchRecursion = measure(() -> {
+			long hits = 0;
+			for (int k : keys) {
+				hits += searchRecursively(tree.getRoot(), k).getKey() == k ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		double selectLoop = measure(() -> {
+			long sum = 0;
+			for (int i : ranks) {
+				sum += tree.selectNode(tree.getRoot(), i).getKey();
+			}
+			return sum;
+		}, QUERIES);
+		double selectRecursion = measure(() -> {
+			long sum = 0;
+			for (int i : ranks) {
+				sum += selectRecursively(tree.getRoot(), i).getKey();
+			}
+			return sum;
+		}, QUERIES);
+		System.out.printf("recursive n=%d  search loop %6.2f recursion %6.2f   select loop %6.2f recursion %6.2f  (M ops/s)%n",
+				N, searchLoop, searchRecursion, selectLoop, selectRecursion);
+	}
+
+	/**
+	 * the recursive searchWithNode that the loop replaced
+	 */
+	private static WAVLTree.WAVLNode searchRecursively(WAVLTree.WAVLNode node, int k) {
+		if (node.getKey() == k) {
+			return node;
+		}
+		WAVLTree.WAVLNode next = node.getKey() < k ? node.getRight() : node.getLeft();
+		return next.isInnerNode() ? searchRecursively(next, k) : node;
+	}
+
+	/**
+	 * the recursive selectRec that selectNode replaced
+	 */
+	private static WAVLTree.WAVLNode selectRecursively(WAVLTree.WAVLNode node, int i) {
+		int r = node.getLeft().getSubtreeSize();
+		if (r > i) {
+			return selectRecursively(node.getLeft(), i);
+		}
+		if (r < i) {
+			return selectRecursively(node.getRight(), i - r - 1);
+		}
+		return node;
+	}
+
+	/**
+	 * WAVLTree and the int, long and generic key trees of AbstractWAVLTree: n inserts followed by n deletes
+	 * in random order, and searches on a full tree of which half miss. The loops are written out for every
+	 * tree, so that no call site sees more than one tree class
+	 */
+	private static void primitive() {
+		SplittableRandom random = new SplittableRandom(6);
+		int[] keys = shuffledKeys(N, 2, random);
+		int[] searched = queries(2 * N, random);
+		Integer[] boxedSearched = new Integer[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			boxedSearched[i] = searched[i];
+		}
+		double wavlChurn = measure(() -> {
+			WAVLTree tree = new WAVLTree();
+			for (int k : keys) {
+				tree.insert(k, "v");
+			}
+			for (int k : keys) {
+				tree.delete(k);
+			}
+			return tree.size();
+		}, 2 * N);
+		double intChurn = measure(() -> {
+			IntWAVLTree<String> tree = new IntWAVLTree<>();
+			for (int k : keys) {
+				tree.insert(k, "v");
+			}
+			for (int k : keys) {
+				tree.delete(k);
+			}
+			return tree.size();
+		}, 2 * N);
+		double longChurn = measure(() -> {
+			LongWAVLTree<String> tree = new LongWAVLTree<>();
+			for (int k : keys) {
+				tree.insert(k, "v");
+			}
+			for (int k : keys) {
+				tree.delete(k);
+			}
+			return tree.size();
+		}, 2 * N);
+		double genericChurn = measure(() -> {
+			GenericWAVLTree<Integer, String> tree = new GenericWAVLTree<>();
+			for (int k : keys) {
+				tree.insert(k, "v");
+			}
+			for (int k : keys) {
+				tree.delete(k);
+			}
+			return tree.size();
+		}, 2 * N);
+		System.out.printf("primitive n=%d  insert+delete  WAVLTree %6.2f  IntWAVLTree %6.2f  LongWAVLTree %6.2f  GenericWAVLTree %6.2f  (M ops/s)%n",
+				N, wavlChurn, intChurn, longChurn, genericChurn);
+		WAVLTree wavl = new WAVLTree();
+		IntWAVLTree<String> ints = new IntWAVLTree<>();
+		LongWAVLTree<String> longs = new LongWAVLTree<>();
+		GenericWAVLTree<Integer, String> generic = new GenericWAVLTree<>();
+		for (int k : keys) {
+			wavl.insert(k, "v");
+			ints.insert(k, "v");
+			longs.insert(k, "v");
+			generic.insert(k, "v");
+		}
+		double wavlSearch = measure(() -> {
+			long hits = 0;
+			for (int k : searched) {
+				hits += wavl.search(k) != null ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		double intSearch = measure(() -> {
+			long hits = 0;
+			for (int k : searched) {
+				hits += ints.search(k) != null ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		double longSearch = measure(() -> {
+			long hits = 0;
+			for (int k : searched) {
+				hits += longs.search(k) != null ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		double genericSearch = measure(() -> {
+			long hits = 0;
+			for (Integer k : boxedSearched) {		//boxed up front, as callers of a generic tree hold them
+				hits += generic.search(k) != null ? 1 : 0;
+			}
+			return hits;
+		}, QUERIES);
+		System.out.printf("primitive n=%d  search         WAVLTree %6.2f  IntWAVLTree %6.2f  LongWAVLTree %6.2f  GenericWAVLTree %6.2f  (M ops/s)%n",
+				N, wavlSearch, intSearch, longSearch, genericSearch);
+	}
+
+	/**
+	 * WAVLMap against TreeMap and ConcurrentSkipListMap, single threaded: n puts followed by n removes in
+	 * random order, gets on a full map of which half miss, and a full iteration over the entries.
+	 * All calls go through NavigableMap, as they do in code that swaps one map for another
+	 */
+	private static void maps() {
+		SplittableRandom random = new SplittableRandom(18);
+		Integer[] keys = boxed(shuffledKeys(N, 2, random));
+		Integer[] searched = boxed(queries(2 * N, random));
+		List<Supplier<NavigableMap<Integer, String>>> kinds = List.of(WAVLMap::new, TreeMap::new, ConcurrentSkipListMap::new);
+		for (Supplier<NavigableMap<Integer, String>> kind : kinds) {
+			double churn = measure(() -> {
+				NavigableMap<Integer, String> map = kind.get();
+				for (Integer k : keys) {
+					map.put(k, "v");
+				}
+				for (Integer k : keys) {
+					map.remove(k);
+				}
+				return map.size();
+			}, 2 * N);
+			NavigableMap<Integer, String> map = kind.get();
+			for (Integer k : keys) {
+				map.put(k, "v");
+			}
+			double get = measure(() -> {
+				long hits = 0;
+				for (Integer k : searched) {
+					hits += map.get(k) != null ? 1 : 0;
+				}
+				return hits;
+			}, QUERIES);
+			double iterate = measure(() -> {
+				long sum = 0;
+				for (Map.Entry<Integer, String> e : map.entrySet()) {
+					sum += e.getKey();
+				}
+				return sum;
+			}, N);
+			System.out.printf("maps n=%d  %-21s put+remove %6.2f  get %6.2f  iterate %7.2f  (M ops/s)%n",
+					N, map.getClass().getSimpleName(), churn, get, iterate);
+		}
+	}
+
+	/**
+	 * search and rank on a WAVLTree built by random inserts against its freeze() copy, for trees of
+	 * 64K keys (which fit in cache), n and 4n keys. Half of the searched keys are missing
+	 */
+	private static void frozen() {
+		SplittableRandom random = new SplittableRandom(22);
+		for (int size : new int[] {1 << 16, N, 4 * N}) {
+			WAVLTree tree = new WAVLTree();
+			for (int k : shuffledKeys(size, 2, random)) {
+				tree.insert(k, "v");
+			}
+			FrozenWAVLTree frozen = tree.freeze();
+			int[] searched = queries(2 * size, random);
+			double liveSearch = measure(() -> {
+				long hits = 0;
+				for (int k : searched) {
+					hits += tree.search(k) != null ? 1 : 0;
+				}
+				return hits;
+			}, QUERIES);
+			double frozenSearch = measure(() -> {
+				long hits = 0;
+				for (int k : searched) {
+					hits += frozen.search(k) != null ? 1 : 0;
+				}
+				return hits;
+			}, QUERIES);
+			double liveRank = measure(() -> {
+				long sum = 0;
+				for (int k : searched) {
+					sum += tree.rank(k);
+				}
+				return sum;
+			}, QUERIES);
+			double frozenRank = measure(() -> {
+				long sum = 0;
+				for (int k : searched) {
+					sum += frozen.rank(k);
+				}
+				return sum;
+			}, QUERIES);
+			System.out.printf("frozen n=%d  search live %6.2f frozen %6.2f   rank live %6.2f frozen %6.2f  (M ops/s)%n",
+					size, liveSearch, frozenSearch, liveRank, frozenRank);
+		}
+	}
+
+	private static Integer[] boxed(int[] ints) {
+		Integer[] boxed = new Integer[ints.length];
+		for (int i = 0; i < ints.length; i++) {
+			boxed[i] = ints[i];
+		}
+		return boxed;
+	}
+
+	private interface KeyMap {
+		String get(int k);
+
+		String put(int k, String v);
+
+		String remove(int k);
+	}
+
+	/**
+	 * StripedWAVLTree against ConcurrentSkipListMap, with 1 to 64 threads that each do 80% get,
+	 * 10% put and 10% remove on keys drawn from [0, 2n), over a map prefilled with n keys.
+	 * The keys are consecutive ints, the case that range stripes would funnel into a single lock
+	 */
+	private static void concurrent() throws InterruptedException {
+		StripedWAVLTree tree = new StripedWAVLTree();
+		ConcurrentSkipListMap<Integer, String> skipList = new ConcurrentSkipListMap<>();
+		for (int k = 0; k < 2 * N; k += 2) {
+			tree.put(k, "v");
+			skipList.put(k, "v");
+		}
+		KeyMap treeMap = new KeyMap() {
+			public String get(int k) {
+				return tree.get(k);
+			}
+
+			public String put(int k, String v) {
+				return tree.put(k, v);
+			}
+
+			public String remove(int k) {
+				return tree.remove(k);
+			}
+		};
+		KeyMap skipMap = new KeyMap() {
+			public String get(int k) {
+				return skipList.get(k);
+			}
+
+			public String put(int k, String v) {
+				return skipList.put(k, v);
+			}
+
+			public String remove(int k) {
+				return skipList.remove(k);
+			}
+		};
+		mixedOps(treeMap, 8);		//warm up
+		mixedOps(skipMap, 8);
+		for (int threads : THREADS) {
+			double wavl = mixedOps(treeMap, threads);
+			double skip = mixedOps(skipMap, threads);
+			System.out.printf("concurrent threads=%2d  StripedWAVLTree %7.2f Mops/s   ConcurrentSkipListMap %7.2f Mops/s%n",
+					threads, wavl, skip);
+		}
+	}
+
+	/**
+	 * runs threads threads on map for MILLIS milliseconds and returns the operations per microsecond
+	 */
+	private static double mixedOps(KeyMap map, int threads) throws InterruptedException {
+		AtomicBoolean stop = new AtomicBoolean();
+		CountDownLatch start = new CountDownLatch(1);
+		long[] counts = new long[threads];
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			Thread worker = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(id);
+				long ops = 0;
+				try {
+					start.await();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				while (!stop.get()) {
+					for (int j = 0; j < 64; j++) {
+						int k = random.nextInt(2 * N);
+						int op = random.nextInt(10);
+						if (op == 0) {
+							map.put(k, "v");
+						}
+						else if (op == 1) {
+							map.remove(k);
+						}
+						else {
+							map.get(k);
+						}
+					}
+					ops += 64;
+				}
+				counts[id] = ops;
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		Thread.sleep(MILLIS);
+		stop.set(true);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		return total * 1000.0 / elapsed;
+	}
+}
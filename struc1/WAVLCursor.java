@@ -0,0 +1,109 @@
+package struc1;
+
+import java.util.NoSuchElementException;
+
+import struc1.WAVLTree.WAVLNode;
+
+/**
+ *
+ * WAVLCursor
+ *
+ * A position in a WAVLTree that moves in key order through parent pointers, without allocating.
+ * A cursor may be repositioned any number of times. Changing the tree invalidates its cursors
+ * until they are positioned again with seek, first or last.
+ *
+ */
+public class WAVLCursor {
+	private final WAVLTree tree;
+	private WAVLNode node;
+
+	/**
+	 * public WAVLCursor(WAVLTree tree)
+	 * initializes a cursor over tree, not yet positioned
+	 */
+	public WAVLCursor(WAVLTree tree) {
+		this.tree = tree;
+		this.node = null;
+	}
+
+	/**
+	 * public boolean seek(int k)
+	 * positions the cursor at the smallest key that is larger than or equal to k.
+	 * returns false (and leaves the cursor unpositioned) if there is no such key
+	 */
+	public boolean seek(int k) {
+		node = tree.ceilingNode(k);
+		return node != null;
+	}
+
+	/**
+	 * public boolean first()
+	 * positions the cursor at the smallest key. returns false if the tree is empty
+	 */
+	public boolean first() {
+		node = tree.getMin();
+		return node != null;
+	}
+
+	/**
+	 * public boolean last()
+	 * positions the cursor at the largest key. returns false if the tree is empty
+	 */
+	public boolean last() {
+		node = tree.getMax();
+		return node != null;
+	}
+
+	/**
+	 * public boolean next()
+	 * moves the cursor to the following key. returns false if there is none, leaving the cursor unpositioned
+	 */
+	public boolean next() {
+		if (node != null) {
+			node = tree.findSuccessor(node);
+		}
+		return node != null;
+	}
+
+	/**
+	 * public boolean prev()
+	 * moves the cursor to the preceding key. returns false if there is none, leaving the cursor unpositioned
+	 */
+	public boolean prev() {
+		if (node != null) {
+			node = tree.findPredecessor(node);
+		}
+		return node != null;
+	}
+
+	/**
+	 * public boolean valid()
+	 * returns true iff the cursor is positioned at an item
+	 */
+	public boolean valid() {
+		return node != null;
+	}
+
+	/**
+	 * public int key()
+	 * returns the key at the cursor's position
+	 */
+	public int key() {
+		return current().getKey();
+	}
+
+	/**
+	 * public String value()
+	 * returns the info at the cursor's position
+	 */
+	public String value() {
+		return current().getValue();
+	}
+
+	private WAVLNode current() {
+		if (node == null) {
+			throw new NoSuchElementException("the cursor is not positioned");
+		}
+		return node;
+	}
+}
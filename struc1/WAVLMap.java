@@ -0,0 +1,792 @@
+package struc1;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import struc1.GenericWAVLTree.GenericNode;
+
+/**
+ *
+ * WAVLMap
+ *
+ * A NavigableMap backed by a GenericWAVLTree, to be used wherever a TreeMap is.
+ * subMap, headMap, tailMap and descendingMap return views of the same tree: they are WAVLMaps
+ * with key bounds (and a direction), so changes through a view show in the map and the other way around.
+ * Since every node knows the size of its subtree, size() of a view, entryAt(index) and indexOf(key)
+ * take O(log n) time.
+ *
+ * Like TreeMap, the map is not synchronized. Its iterators are not fail-fast: the map must not be
+ * changed while it is iterated, except through the iterator's own remove.
+ *
+ */
+public class WAVLMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+	private final GenericWAVLTree<K, V> tree;
+	private final boolean fromStart;		//no lower bound
+	private final K lo;
+	private final boolean loInclusive;
+	private final boolean toEnd;			//no upper bound
+	private final K hi;
+	private final boolean hiInclusive;
+	private final boolean descending;
+
+	/**
+	 * public WAVLMap()
+	 * initializes an empty map ordered by the natural ordering of its keys
+	 */
+	public WAVLMap() {
+		this((Comparator<? super K>) null);
+	}
+
+	/**
+	 * public WAVLMap(Comparator<? super K> comparator)
+	 * initializes an empty map ordered by comparator (or by the natural ordering of its keys, if comparator is null)
+	 */
+	public WAVLMap(Comparator<? super K> comparator) {
+		this(new GenericWAVLTree<K, V>(comparator), true, null, false, true, null, false, false);
+	}
+
+	/**
+	 * public WAVLMap(Map<? extends K, ? extends V> map)
+	 * initializes a map holding the entries of map, ordered like map if it is a SortedMap,
+	 * and by the natural ordering of the keys otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public WAVLMap(Map<? extends K, ? extends V> map) {
+		this(map instanceof SortedMap ? ((SortedMap<K, ?>) map).comparator() : null);
+		putAll(map);
+	}
+
+	private WAVLMap(GenericWAVLTree<K, V> tree, boolean fromStart, K lo, boolean loInclusive,
+			boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+		if (!fromStart && !toEnd && tree.compare(lo, hi) > 0) {
+			throw new IllegalArgumentException("fromKey > toKey");
+		}
+		if (!fromStart) {
+			tree.compare(lo, lo);		//type (and null) check
+		}
+		if (!toEnd) {
+			tree.compare(hi, hi);
+		}
+		this.tree = tree;
+		this.fromStart = fromStart;
+		this.lo = lo;
+		this.loInclusive = loInclusive;
+		this.toEnd = toEnd;
+		this.hi = hi;
+		this.hiInclusive = hiInclusive;
+		this.descending = descending;
+	}
+
+	/* bounds */
+
+	private boolean tooLow(K k) {
+		if (fromStart) {
+			return false;
+		}
+		int c = tree.compare(k, lo);
+		return c < 0 || (c == 0 && !loInclusive);
+	}
+
+	private boolean tooHigh(K k) {
+		if (toEnd) {
+			return false;
+		}
+		int c = tree.compare(k, hi);
+		return c > 0 || (c == 0 && !hiInclusive);
+	}
+
+	private boolean inRange(K k) {
+		return !tooLow(k) && !tooHigh(k);
+	}
+
+	/**
+	 * the range that new bounds may take: exclusive bounds may equal the bounds of this view
+	 */
+	private boolean inRange(K k, boolean inclusive) {
+		if (inclusive) {
+			return inRange(k);
+		}
+		return (fromStart || tree.compare(k, lo) >= 0) && (toEnd || tree.compare(k, hi) <= 0);
+	}
+
+	/* navigation in ascending key order, within the bounds */
+
+	private GenericNode<K, V> absLowest() {
+		GenericNode<K, V> node = fromStart ? tree.getMin() : (loInclusive ? tree.ceilingNode(lo) : tree.higherNode(lo));
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private GenericNode<K, V> absHighest() {
+		GenericNode<K, V> node = toEnd ? tree.getMax() : (hiInclusive ? tree.floorNode(hi) : tree.lowerNode(hi));
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	private GenericNode<K, V> absCeiling(K k) {
+		if (tooLow(k)) {
+			return absLowest();
+		}
+		GenericNode<K, V> node = tree.ceilingNode(k);
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private GenericNode<K, V> absHigher(K k) {
+		if (tooLow(k)) {
+			return absLowest();
+		}
+		GenericNode<K, V> node = tree.higherNode(k);
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private GenericNode<K, V> absFloor(K k) {
+		if (tooHigh(k)) {
+			return absHighest();
+		}
+		GenericNode<K, V> node = tree.floorNode(k);
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	private GenericNode<K, V> absLower(K k) {
+		if (tooHigh(k)) {
+			return absHighest();
+		}
+		GenericNode<K, V> node = tree.lowerNode(k);
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	/* navigation in the order of this view */
+
+	private GenericNode<K, V> firstNode() {
+		return descending ? absHighest() : absLowest();
+	}
+
+	private GenericNode<K, V> lastNode() {
+		return descending ? absLowest() : absHighest();
+	}
+
+	private GenericNode<K, V> nextNode(GenericNode<K, V> node) {
+		GenericNode<K, V> next = descending ? tree.findPredecessor(node) : tree.findSuccessor(node);
+		return next == null || !inRange(next.getKey()) ? null : next;
+	}
+
+	private static <K, V> Map.Entry<K, V> exportEntry(GenericNode<K, V> node) {
+		return node == null ? null : new AbstractMap.SimpleImmutableEntry<K, V>(node.getKey(), node.getValue());
+	}
+
+	private static <K> K keyOrNull(GenericNode<K, ?> node) {
+		return node == null ? null : node.getKey();
+	}
+
+	private static <K> K key(GenericNode<K, ?> node) {
+		if (node == null) {
+			throw new NoSuchElementException();
+		}
+		return node.getKey();
+	}
+
+	@SuppressWarnings("unchecked")
+	private GenericNode<K, V> getNode(Object key) {
+		K k = (K) key;
+		if (!inRange(k)) {
+			return null;
+		}
+		return tree.getNode(k);
+	}
+
+	/* Map */
+
+	@Override
+	public int size() {
+		if (fromStart && toEnd) {
+			return tree.size();
+		}
+		int upTo = toEnd ? tree.size() : tree.countBelow(hi, hiInclusive);
+		int from = fromStart ? 0 : tree.countBelow(lo, !loInclusive);
+		return Math.max(0, upTo - from);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return fromStart && toEnd ? tree.empty() : firstNode() == null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return getNode(key) != null;
+	}
+
+	@Override
+	public V get(Object key) {
+		GenericNode<K, V> node = getNode(key);
+		return node == null ? null : node.getValue();
+	}
+
+	/**
+	 * public V put(K key, V value)
+	 * stores value with key, replacing the value of an entry with that key if there is one.
+	 * returns the replaced value, or null if there was none. One search serves both cases
+	 */
+	@Override
+	public V put(K key, V value) {
+		if (!inRange(key)) {
+			throw new IllegalArgumentException("key out of range");
+		}
+		if (tree.empty()) {
+			tree.insert(key, value);
+			return null;
+		}
+		GenericNode<K, V> parent = tree.searchWithNode(key);
+		int c = tree.compare(key, parent.getKey());
+		if (c == 0) {
+			V old = parent.value;
+			parent.value = value;
+			return old;
+		}
+		tree.insertNode(parent, new GenericNode<K, V>(key, value), c < 0);
+		return null;
+	}
+
+	@Override
+	public V remove(Object key) {
+		GenericNode<K, V> node = getNode(key);
+		if (node == null) {
+			return null;
+		}
+		tree.deleteNode(node);
+		return node.getValue();
+	}
+
+	@Override
+	public void clear() {
+		if (fromStart && toEnd) {
+			tree.clear();
+		}
+		else {
+			for (Iterator<K> it = keyIterator(); it.hasNext(); ) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	/* positional access */
+
+	/**
+	 * public Map.Entry<K, V> entryAt(int index)
+	 * returns the entry at position index (counting from 0) in the order of this map, in O(log n) time
+	 */
+	public Map.Entry<K, V> entryAt(int index) {
+		int size = size();
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+		}
+		int from = fromStart ? 0 : tree.countBelow(lo, !loInclusive);
+		return exportEntry(tree.selectNode(tree.getRoot(), from + (descending ? size - 1 - index : index)));
+	}
+
+	/**
+	 * public int indexOf(Object key)
+	 * returns the position of key (counting from 0) in the order of this map, or -1 if it is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public int indexOf(Object key) {
+		if (getNode(key) == null) {
+			return -1;
+		}
+		int from = fromStart ? 0 : tree.countBelow(lo, !loInclusive);
+		int index = tree.countBelow((K) key, false) - from;
+		return descending ? size() - 1 - index : index;
+	}
+
+	/* SortedMap and NavigableMap */
+
+	@Override
+	public Comparator<? super K> comparator() {
+		Comparator<? super K> comparator = tree.comparator();
+		if (!descending) {
+			return comparator;
+		}
+		return comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator);
+	}
+
+	@Override
+	public K firstKey() {
+		return key(firstNode());
+	}
+
+	@Override
+	public K lastKey() {
+		return key(lastNode());
+	}
+
+	@Override
+	public Map.Entry<K, V> firstEntry() {
+		return exportEntry(firstNode());
+	}
+
+	@Override
+	public Map.Entry<K, V> lastEntry() {
+		return exportEntry(lastNode());
+	}
+
+	@Override
+	public Map.Entry<K, V> pollFirstEntry() {
+		return poll(firstNode());
+	}
+
+	@Override
+	public Map.Entry<K, V> pollLastEntry() {
+		return poll(lastNode());
+	}
+
+	private Map.Entry<K, V> poll(GenericNode<K, V> node) {
+		if (node == null) {
+			return null;
+		}
+		Map.Entry<K, V> entry = exportEntry(node);
+		tree.deleteNode(node);
+		return entry;
+	}
+
+	@Override
+	public Map.Entry<K, V> lowerEntry(K key) {
+		return exportEntry(lowerNode(key));
+	}
+
+	@Override
+	public K lowerKey(K key) {
+		return keyOrNull(lowerNode(key));
+	}
+
+	@Override
+	public Map.Entry<K, V> floorEntry(K key) {
+		return exportEntry(floorNode(key));
+	}
+
+	@Override
+	public K floorKey(K key) {
+		return keyOrNull(floorNode(key));
+	}
+
+	@Override
+	public Map.Entry<K, V> ceilingEntry(K key) {
+		return exportEntry(ceilingNode(key));
+	}
+
+	@Override
+	public K ceilingKey(K key) {
+		return keyOrNull(ceilingNode(key));
+	}
+
+	@Override
+	public Map.Entry<K, V> higherEntry(K key) {
+		return exportEntry(higherNode(key));
+	}
+
+	@Override
+	public K higherKey(K key) {
+		return keyOrNull(higherNode(key));
+	}
+
+	private GenericNode<K, V> lowerNode(K key) {
+		return descending ? absHigher(key) : absLower(key);
+	}
+
+	private GenericNode<K, V> floorNode(K key) {
+		return descending ? absCeiling(key) : absFloor(key);
+	}
+
+	private GenericNode<K, V> ceilingNode(K key) {
+		return descending ? absFloor(key) : absCeiling(key);
+	}
+
+	private GenericNode<K, V> higherNode(K key) {
+		return descending ? absLower(key) : absHigher(key);
+	}
+
+	/* views */
+
+	@Override
+	public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+		if (descending) {
+			return view(false, toKey, toInclusive, false, fromKey, fromInclusive);
+		}
+		return view(false, fromKey, fromInclusive, false, toKey, toInclusive);
+	}
+
+	@Override
+	public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+		if (descending) {
+			return view(false, toKey, inclusive, true, null, false);
+		}
+		return view(true, null, false, false, toKey, inclusive);
+	}
+
+	@Override
+	public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		if (descending) {
+			return view(true, null, false, false, fromKey, inclusive);
+		}
+		return view(false, fromKey, inclusive, true, null, false);
+	}
+
+	@Override
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+
+	@Override
+	public NavigableMap<K, V> descendingMap() {
+		return new WAVLMap<K, V>(tree, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+	}
+
+	/**
+	 * returns a view with the given bounds in ascending key order (an absent bound keeps this map's bound)
+	 */
+	private WAVLMap<K, V> view(boolean keepLo, K newLo, boolean newLoInclusive, boolean keepHi, K newHi, boolean newHiInclusive) {
+		if (!keepLo && !inRange(newLo, newLoInclusive)) {
+			throw new IllegalArgumentException("fromKey out of range");
+		}
+		if (!keepHi && !inRange(newHi, newHiInclusive)) {
+			throw new IllegalArgumentException("toKey out of range");
+		}
+		if (keepLo) {
+			return new WAVLMap<K, V>(tree, fromStart, lo, loInclusive, false, newHi, newHiInclusive, descending);
+		}
+		if (keepHi) {
+			return new WAVLMap<K, V>(tree, false, newLo, newLoInclusive, toEnd, hi, hiInclusive, descending);
+		}
+		return new WAVLMap<K, V>(tree, false, newLo, newLoInclusive, false, newHi, newHiInclusive, descending);
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return navigableKeySet();
+	}
+
+	@Override
+	public NavigableSet<K> navigableKeySet() {
+		return new KeySet<K>(this);
+	}
+
+	@Override
+	public NavigableSet<K> descendingKeySet() {
+		return descendingMap().navigableKeySet();
+	}
+
+	@Override
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new NodeIterator<V>() {
+					@Override
+					V get(GenericNode<K, V> node) {
+						return node.getValue();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return WAVLMap.this.size();
+			}
+
+			@Override
+			public void clear() {
+				WAVLMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new NodeIterator<Map.Entry<K, V>>() {
+					@Override
+					Map.Entry<K, V> get(GenericNode<K, V> node) {
+						return new Entry(node);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return WAVLMap.this.size();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Map.Entry)) {
+					return false;
+				}
+				Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+				GenericNode<K, V> node = getNode(entry.getKey());
+				return node != null && Objects.equals(node.getValue(), entry.getValue());
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				if (!contains(o)) {
+					return false;
+				}
+				WAVLMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+				return true;
+			}
+
+			@Override
+			public void clear() {
+				WAVLMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * walks the nodes of this map in its order. remove deletes the last node returned; since deleteNode
+	 * moves nodes rather than their items, the next node stays valid
+	 */
+	private abstract class NodeIterator<T> implements Iterator<T> {
+		private GenericNode<K, V> next = firstNode();
+		private GenericNode<K, V> last = null;
+
+		abstract T get(GenericNode<K, V> node);
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = nextNode(next);
+			return get(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			tree.deleteNode(last);
+			last = null;
+		}
+	}
+
+	/**
+	 * an entry of the entry set, writing through to its node
+	 */
+	private final class Entry implements Map.Entry<K, V> {
+		private final GenericNode<K, V> node;
+
+		Entry(GenericNode<K, V> node) {
+			this.node = node;
+		}
+
+		@Override
+		public K getKey() {
+			return node.getKey();
+		}
+
+		@Override
+		public V getValue() {
+			return node.getValue();
+		}
+
+		@Override
+		public V setValue(V value) {
+			V old = node.value;
+			node.value = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			return Objects.equals(getKey(), entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * the keys of a WAVLMap (or of one of its views), as a NavigableSet view
+	 */
+	private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+		private final WAVLMap<K, ?> map;
+
+		KeySet(WAVLMap<K, ?> map) {
+			this.map = map;
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			return map.keyIterator();
+		}
+
+		@Override
+		public Iterator<K> descendingIterator() {
+			return descendingSet().iterator();
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return map.containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!map.containsKey(o)) {
+				return false;
+			}
+			map.remove(o);
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+
+		@Override
+		public Comparator<? super K> comparator() {
+			return map.comparator();
+		}
+
+		@Override
+		public K first() {
+			return map.firstKey();
+		}
+
+		@Override
+		public K last() {
+			return map.lastKey();
+		}
+
+		@Override
+		public K lower(K k) {
+			return map.lowerKey(k);
+		}
+
+		@Override
+		public K floor(K k) {
+			return map.floorKey(k);
+		}
+
+		@Override
+		public K ceiling(K k) {
+			return map.ceilingKey(k);
+		}
+
+		@Override
+		public K higher(K k) {
+			return map.higherKey(k);
+		}
+
+		@Override
+		public K pollFirst() {
+			return keyOrNull(map.pollFirstEntry());
+		}
+
+		@Override
+		public K pollLast() {
+			return keyOrNull(map.pollLastEntry());
+		}
+
+		private static <K> K keyOrNull(Map.Entry<K, ?> entry) {
+			return entry == null ? null : entry.getKey();
+		}
+
+		@Override
+		public NavigableSet<K> descendingSet() {
+			return new KeySet<K>((WAVLMap<K, ?>) map.descendingMap());
+		}
+
+		@Override
+		public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+			return new KeySet<K>((WAVLMap<K, ?>) map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+		}
+
+		@Override
+		public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+			return new KeySet<K>((WAVLMap<K, ?>) map.headMap(toElement, inclusive));
+		}
+
+		@Override
+		public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+			return new KeySet<K>((WAVLMap<K, ?>) map.tailMap(fromElement, inclusive));
+		}
+
+		@Override
+		public SortedSet<K> subSet(K fromElement, K toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<K> headSet(K toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<K> tailSet(K fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+
+	private Iterator<K> keyIterator() {
+		return new NodeIterator<K>() {
+			@Override
+			K get(GenericNode<K, V> node) {
+				return node.getKey();
+			}
+		};
+	}
+}
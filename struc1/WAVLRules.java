@@ -0,0 +1,153 @@
+package struc1;
+
+/**
+ *
+ * WAVLRules
+ *
+ * The rebalancing rules of a WAVL Tree, shared by every tree in this package: which step insert and
+ * delete take at a node given its rank differences, how many rebalancing operations the step counts,
+ * and how the step changes the ranks of the nodes it moves. The trees only carry the steps out on
+ * their own node representation (object links, int indexes or copied paths).
+ *
+ * A step is taken at node, the lowest node whose rank differences are not legal. Insert looks at
+ * node's 0-child, delete at the sibling of node's 3-child; for a double rotation, grandChild is the
+ * inner child of that child or sibling, which ends up on top.
+ *
+ */
+final class WAVLRules {
+	static final int DONE = 0;					//the tree is balanced
+	static final int PROMOTE = 1;				//insert case 1
+	static final int ROTATE = 2;				//insert case 2
+	static final int DOUBLE_ROTATE = 3;			//insert case 3
+	static final int LEAF_DEMOTE = 4;			//delete, 2,2 leaf
+	static final int DEMOTE = 5;				//delete case 1
+	static final int DOUBLE_DEMOTE = 6;			//delete case 2
+	static final int DELETE_ROTATE = 7;			//delete case 3
+	static final int DELETE_DOUBLE_ROTATE = 8;	//delete case 4
+
+	private static final int[] COST = {0, 1, 2, 5, 1, 1, 2, 3, 6};
+
+	private WAVLRules() {
+	}
+
+	/**
+	 * returns the step insert takes at a node with rank differences leftDiff and rightDiff:
+	 * DONE, PROMOTE, or ROTATE for a 0,2 node, which insertRotation then tells apart from DOUBLE_ROTATE
+	 */
+	static int insertStep(int leftDiff, int rightDiff) {
+		if (leftDiff != 0 && rightDiff != 0) {
+			return DONE;
+		}
+		if (leftDiff == 1 || rightDiff == 1) {
+			return PROMOTE;
+		}
+		return ROTATE;
+	}
+
+	/**
+	 * returns the rotation of a 0,2 node, ROTATE or DOUBLE_ROTATE. outerDiff is the rank difference
+	 * between the 0-child and its child on the same side (the left child's left child, or the right child's right child)
+	 */
+	static int insertRotation(int outerDiff) {
+		return outerDiff == 1 ? ROTATE : DOUBLE_ROTATE;
+	}
+
+	/**
+	 * returns the step delete takes at a node with rank differences leftDiff and rightDiff:
+	 * DONE, LEAF_DEMOTE, DEMOTE, or DELETE_ROTATE for a 3,1 node, which deleteRotation then classifies
+	 */
+	static int deleteStep(boolean leaf, int leftDiff, int rightDiff) {
+		if (leaf) {
+			return leftDiff == 2 && rightDiff == 2 ? LEAF_DEMOTE : DONE;
+		}
+		if (leftDiff <= 2 && rightDiff <= 2) {
+			return DONE;
+		}
+		if (leftDiff == 2 || rightDiff == 2) {
+			return DEMOTE;
+		}
+		return DELETE_ROTATE;
+	}
+
+	/**
+	 * returns the step at a 3,1 node, DOUBLE_DEMOTE, DELETE_ROTATE or DELETE_DOUBLE_ROTATE.
+	 * innerDiff and outerDiff are the rank differences between the 1-child (the sibling) and its children,
+	 * on the side facing the 3-child and on the other side
+	 */
+	static int deleteRotation(int innerDiff, int outerDiff) {
+		if (innerDiff == 2 && outerDiff == 2) {
+			return DOUBLE_DEMOTE;
+		}
+		return outerDiff == 1 ? DELETE_ROTATE : DELETE_DOUBLE_ROTATE;
+	}
+
+	/**
+	 * returns the number of rebalancing operations step counts
+	 */
+	static int cost(int step) {
+		return COST[step];
+	}
+
+	/**
+	 * returns true iff the rebalancing continues at the parent of node after step
+	 */
+	static boolean climbs(int step) {
+		return step == PROMOTE || step == LEAF_DEMOTE || step == DEMOTE || step == DOUBLE_DEMOTE;
+	}
+
+	/**
+	 * returns true iff step rotates the grandchild up twice
+	 */
+	static boolean doubleRotation(int step) {
+		return step == DOUBLE_ROTATE || step == DELETE_DOUBLE_ROTATE;
+	}
+
+	/**
+	 * returns the change in node's rank. leaf tells if node is a leaf after the rotation of DELETE_ROTATE,
+	 * which would make it a 2,2 leaf, so it is demoted twice
+	 */
+	static int nodeDelta(int step, boolean leaf) {
+		switch (step) {
+			case PROMOTE:
+				return 1;
+			case DELETE_ROTATE:
+				return leaf ? -2 : -1;
+			case DELETE_DOUBLE_ROTATE:
+				return -2;
+			case DONE:
+				return 0;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * returns the change in the rank of the child (insert) or sibling (delete) that step looked at
+	 */
+	static int childDelta(int step) {
+		switch (step) {
+			case DOUBLE_ROTATE:
+			case DOUBLE_DEMOTE:
+			case DELETE_DOUBLE_ROTATE:
+				return -1;
+			case DELETE_ROTATE:
+				return 1;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * returns the change in the rank of grandChild, which only double rotations move
+	 */
+	static int grandChildDelta(int step) {
+		switch (step) {
+			case DOUBLE_ROTATE:
+				return 1;
+			case DELETE_DOUBLE_ROTATE:
+				return 2;
+			default:
+				return 0;
+		}
+	}
+}
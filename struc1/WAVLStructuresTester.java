@@ -0,0 +1,1321 @@
+package struc1;
+
+import struc1.WAVLTree.WAVLNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.StreamSupport;
+
+/**
+ * Differential tests of the trees built on WAVLTree: every round runs random operations on a tree and on
+ * a TreeMap that models it, and checks the WAVL invariants and the answers of the tree after each one.
+ * Batches are drawn both small (insertAll and deleteAll go item by item) and large (they rebuild the tree).
+ */
+public class WAVLStructuresTester {
+    private static final int ROUNDS = 200;
+    private static final int OPERATIONS = 60;
+
+    public static void main(String[] args) {
+        run("join/split", WAVLStructuresTester::testJoinSplit);
+        run("union/intersect/difference", WAVLStructuresTester::testSetOperations);
+        run("WAVLMap", WAVLStructuresTester::testMap);
+        run("freeze", WAVLStructuresTester::testFreeze);
+        run("AggregateWAVLTree", WAVLStructuresTester::testAggregates);
+        run("IntervalWAVLTree", WAVLStructuresTester::testIntervals);
+        run("MultisetWAVLTree", WAVLStructuresTester::testMultiset);
+        run("StripedWAVLTree", WAVLStructuresTester::testStriped);
+        run("MappedWAVLTree", WAVLStructuresTester::testMapped);
+        run("IntArrayWAVLTree", WAVLStructuresTester::testIntArray);
+        run("PersistentWAVLTree", WAVLStructuresTester::testPersistent);
+        run("WAVLCursor/forEach", WAVLStructuresTester::testCursor);
+        run("floor/ceiling/lower/higher", WAVLStructuresTester::testBounds);
+        run("range/countRange", WAVLStructuresTester::testRange);
+        run("fromSorted", WAVLStructuresTester::testFromSorted);
+        run("parallelFromSorted/parallelForEach", WAVLStructuresTester::testParallel);
+        run("spliterator", WAVLStructuresTester::testSpliterator);
+        run("node pool", WAVLStructuresTester::testPool);
+    }
+
+    private interface Check {
+        void run(Random r);
+    }
+
+    private static void run(String name, Check check) {
+        for (int i = 0; i < ROUNDS; i++) {
+            try {
+                check.run(new Random(i));
+            } catch (RuntimeException e) {
+                System.out.println(name + " seed " + i + " Result: " + e);
+                e.printStackTrace(System.out);
+                return;
+            }
+        }
+        System.out.println(name + " Result: OK");
+    }
+
+    private static void require(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException(what);
+        }
+    }
+
+    /**
+     * checks the order, rank rule, parents, sizes, min and max of tree and returns its size
+     */
+    static int checkTree(WAVLTree tree) {
+        if (tree.empty()) {
+            require(tree.size() == 0, "empty tree of size " + tree.size());
+            return 0;
+        }
+        WAVLNode root = tree.getRoot();
+        require(root.getParent() == null, "root has a parent");
+        int n = checkSubtree(root, Long.MIN_VALUE, Long.MAX_VALUE);
+        require(n == tree.size(), "size " + tree.size() + " but " + n + " nodes");
+        WAVLNode node = root;
+        while (node.getLeft().isInnerNode()) {
+            node = node.getLeft();
+        }
+        require(tree.getMin() == node, "wrong min");
+        node = root;
+        while (node.getRight().isInnerNode()) {
+            node = node.getRight();
+        }
+        require(tree.getMax() == node, "wrong max");
+        return n;
+    }
+
+    private static int checkSubtree(WAVLNode node, long lo, long hi) {
+        if (!node.isInnerNode()) {
+            return 0;
+        }
+        require(lo < node.getKey() && node.getKey() < hi, "key " + node.getKey() + " out of order");
+        WAVLNode left = node.getLeft(), right = node.getRight();
+        int leftDiff = node.getRank() - left.getRank(), rightDiff = node.getRank() - right.getRank();
+        require(leftDiff >= 1 && leftDiff <= 2 && rightDiff >= 1 && rightDiff <= 2,
+                "rank differences " + leftDiff + "," + rightDiff + " at " + node.getKey());
+        require(left.isInnerNode() || right.isInnerNode() || node.getRank() == 0, "leaf " + node.getKey() + " of rank " + node.getRank());
+        require(!left.isInnerNode() || left.getParent() == node, "bad parent of " + left.getKey());
+        require(!right.isInnerNode() || right.getParent() == node, "bad parent of " + right.getKey());
+        int size = 1 + checkSubtree(left, lo, node.getKey()) + checkSubtree(right, node.getKey(), hi);
+        require(size == node.getSubtreeSize(), "size " + node.getSubtreeSize() + " of " + node.getKey() + " but " + size + " nodes");
+        return size;
+    }
+
+    /**
+     * checks the order, rank rule, parents, sizes, min and max of an IndexedWAVLTree,
+     * and returns its nodes in key order
+     */
+    static int[] checkIndexed(IndexedWAVLTree tree) {
+        int root = tree.root();
+        if (root == IndexedWAVLTree.EXTERNAL) {
+            require(tree.size() == 0 && tree.empty(), "empty tree of size " + tree.size());
+            return new int[0];
+        }
+        require(tree.parent(root) == IndexedWAVLTree.EXTERNAL, "root has a parent");
+        int[] nodes = new int[tree.subtreeSize(root)];
+        int n = checkIndexedSubtree(tree, root, Long.MIN_VALUE, Long.MAX_VALUE, nodes, 0);
+        require(n == nodes.length, "size " + nodes.length + " but " + n + " nodes");
+        require(tree.minNode() == nodes[0] && tree.maxNode() == nodes[n - 1], "wrong min or max");
+        return nodes;
+    }
+
+    private static int checkIndexedSubtree(IndexedWAVLTree tree, int node, long lo, long hi, int[] nodes, int at) {
+        if (node == IndexedWAVLTree.EXTERNAL) {
+            return at;
+        }
+        int key = tree.key(node), left = tree.left(node), right = tree.right(node);
+        require(lo < key && key < hi, "key " + key + " out of order");
+        int leftDiff = tree.rank(node) - tree.rank(left), rightDiff = tree.rank(node) - tree.rank(right);
+        require(leftDiff >= 1 && leftDiff <= 2 && rightDiff >= 1 && rightDiff <= 2,
+                "rank differences " + leftDiff + "," + rightDiff + " at " + key);
+        require(left != IndexedWAVLTree.EXTERNAL || right != IndexedWAVLTree.EXTERNAL || tree.rank(node) == 0, "leaf " + key + " of rank " + tree.rank(node));
+        require(left == IndexedWAVLTree.EXTERNAL || tree.parent(left) == node, "bad parent of " + tree.key(left));
+        require(right == IndexedWAVLTree.EXTERNAL || tree.parent(right) == node, "bad parent of " + tree.key(right));
+        int first = at;
+        require(at < nodes.length, "more nodes than the size of the root");
+        at = checkIndexedSubtree(tree, left, lo, key, nodes, at);
+        require(at < nodes.length, "more nodes than the size of the root");
+        nodes[at++] = node;
+        at = checkIndexedSubtree(tree, right, key, hi, nodes, at);
+        require(at - first == tree.subtreeSize(node), "size " + tree.subtreeSize(node) + " of " + key + " but " + (at - first) + " nodes");
+        return at;
+    }
+
+    /**
+     * checks that an IndexedWAVLTree holds exactly the items of model, in order, and returns its nodes in key order
+     */
+    private static int[] requireIndexedItems(IndexedWAVLTree tree, TreeMap<Integer, String> model) {
+        int[] nodes = checkIndexed(tree);
+        require(nodes.length == model.size() && tree.size() == model.size(), "size " + tree.size() + ", expected " + model.size());
+        int[] keys = tree.keysToArray();
+        String[] infos = tree.infoToArray();
+        int j = 0;
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(keys[j] == e.getKey() && Objects.equals(infos[j], e.getValue()), "item " + j + " is " + keys[j] + ", expected " + e.getKey());
+            require(Objects.equals(tree.select(j + 1), e.getValue()), "select(" + (j + 1) + ")");
+            require(Objects.equals(tree.search(e.getKey()), e.getValue()), "search(" + e.getKey() + ")");
+            j++;
+        }
+        require(tree.select(0) == null && tree.select(model.size() + 1) == null, "select out of range");
+        require(Objects.equals(tree.min(), model.isEmpty() ? null : model.firstEntry().getValue()), "min");
+        require(Objects.equals(tree.max(), model.isEmpty() ? null : model.lastEntry().getValue()), "max");
+        return nodes;
+    }
+
+    /**
+     * returns batch random keys below range, which may repeat
+     */
+    private static int[] randomKeys(Random r, int batch, int range) {
+        int[] keys = new int[batch];
+        for (int j = 0; j < batch; j++) {
+            keys[j] = r.nextInt(range);
+        }
+        return keys;
+    }
+
+    /**
+     * returns a batch size that makes insertAll and deleteAll go item by item or rebuild, about equally often
+     */
+    private static int batchSize(Random r, int size) {
+        return r.nextBoolean() ? 1 + r.nextInt(2) : size / 2 + 1 + r.nextInt(size + 8);
+    }
+
+    private static String[] infos(int[] keys) {
+        String[] infos = new String[keys.length];
+        for (int j = 0; j < keys.length; j++) {
+            infos[j] = "b" + keys[j];
+        }
+        return infos;
+    }
+
+    /**
+     * fills a tree and its model with keys from [lo, hi) and items from both batch paths
+     */
+    private static WAVLTree randomTree(Random r, TreeMap<Integer, String> model, int lo, int hi) {
+        WAVLTree tree = new WAVLTree();
+        if (hi <= lo) {
+            return tree;
+        }
+        int inserts = r.nextInt(2 * (hi - lo) / 3 + 1);
+        for (int op = 0; op < inserts; op++) {
+            int k = lo + r.nextInt(hi - lo);
+            boolean rebuild = r.nextInt(inserts) < 2;      // about two batches per tree that rebuild it
+            if (rebuild || r.nextInt(4) == 0) {
+                int[] keys = new int[rebuild ? 1 + model.size() : 1 + r.nextInt(3)];
+                for (int j = 0; j < keys.length; j++) {
+                    keys[j] = lo + r.nextInt(hi - lo);
+                }
+                String[] infos = infos(keys);
+                tree.insertAll(keys, infos);
+                for (int j = 0; j < keys.length; j++) {
+                    model.putIfAbsent(keys[j], infos[j]);
+                }
+            }
+            else {
+                tree.insert(k, "i" + k);
+                model.putIfAbsent(k, "i" + k);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * checks that tree holds exactly the items of model, in order
+     */
+    private static void requireItems(WAVLTree tree, TreeMap<Integer, String> model) {
+        require(checkTree(tree) == model.size(), "size " + tree.size() + ", expected " + model.size());
+        int[] keys = tree.keysToArray();
+        String[] infos = tree.infoToArray();
+        int j = 0;
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(keys[j] == e.getKey() && infos[j].equals(e.getValue()), "item " + j + " is " + keys[j] + ", expected " + e.getKey());
+            j++;
+        }
+    }
+
+    private static void testJoinSplit(Random r) {
+        int size = 1 + r.nextInt(300);
+        TreeMap<Integer, String> leftModel = new TreeMap<>(), rightModel = new TreeMap<>();
+        int key = r.nextInt(size);
+        WAVLTree left = randomTree(r, leftModel, 0, key);
+        WAVLTree right = randomTree(r, rightModel, key + 1, key + 1 + (r.nextBoolean() ? r.nextInt(8) : size));
+        WAVLTree joined = WAVLTree.join(left, key, "j", right);
+        require(left.empty() && right.empty(), "join left its arguments non-empty");
+        TreeMap<Integer, String> model = new TreeMap<>(leftModel);
+        model.put(key, "j");
+        model.putAll(rightModel);
+        requireItems(joined, model);
+        for (int round = 0; round < 4 && !joined.empty(); round++) {
+            int k = r.nextInt(size + 2) - 1;
+            WAVLTree[] parts = joined.split(k);
+            require(joined.empty(), "split left the tree non-empty");
+            requireItems(parts[0], new TreeMap<>(model.headMap(k)));
+            requireItems(parts[1], new TreeMap<>(model.tailMap(k)));
+            if (parts[0].insert(k - 1, "x") >= 0) {  // the halves are still working trees
+                parts[0].delete(k - 1);
+            }
+            if (parts[1].empty() || parts[0].empty() || parts[1].getMin().getKey() != k) {
+                joined = parts[1].empty() ? parts[0] : parts[1];
+                model = new TreeMap<>(parts[1].empty() ? model.headMap(k) : model.tailMap(k));
+                continue;
+            }
+            String value = model.get(k);
+            parts[1].delete(k);
+            joined = WAVLTree.join(parts[0], k, value, parts[1]);
+            requireItems(joined, model);
+        }
+    }
+
+    /**
+     * every tenth round uses trees large enough for the set operations to fork
+     */
+    private static void testSetOperations(Random r) {
+        int range = r.nextInt(10) == 0 ? 20000 : 1 + r.nextInt(400);
+        for (int operation = 0; operation < 3; operation++) {
+            TreeMap<Integer, String> modelA = new TreeMap<>(), modelB = new TreeMap<>();
+            WAVLTree a = randomTree(r, modelA, 0, range);
+            WAVLTree b = randomTree(r, modelB, r.nextInt(range / 2 + 1), range + r.nextInt(20));
+            for (Map.Entry<Integer, String> e : modelB.entrySet()) {
+                if (b.update(e.getKey(), "b" + e.getKey()) != null) {   // tell the infos of b apart
+                    e.setValue("b" + e.getKey());
+                }
+            }
+            TreeMap<Integer, String> expected = new TreeMap<>(modelA);
+            WAVLTree result;
+            if (operation == 0) {
+                result = a.union(b);
+                for (Map.Entry<Integer, String> e : modelB.entrySet()) {
+                    expected.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+            else if (operation == 1) {
+                result = a.intersect(b);
+                expected.keySet().retainAll(modelB.keySet());
+            }
+            else {
+                result = a.difference(b);
+                expected.keySet().removeAll(modelB.keySet());
+            }
+            require(a.empty() && b.empty(), "set operation " + operation + " left its arguments non-empty");
+            requireItems(result, expected);
+            if (!expected.isEmpty()) {
+                int k = expected.firstKey();
+                result.delete(k);               // the result is still a working tree
+                expected.remove(k);
+                requireItems(result, expected);
+            }
+        }
+    }
+
+    /**
+     * runs the same operations on a WAVLMap and a TreeMap, directly and through a random view of each
+     */
+    private static void testMap(Random r) {
+        Comparator<Integer> order = r.nextBoolean() ? null : Comparator.reverseOrder();
+        NavigableMap<Integer, String> map = new WAVLMap<>(order), model = new TreeMap<>(order);
+        int range = 1 + r.nextInt(300);
+        for (int op = 0; op < OPERATIONS; op++) {
+            int k = r.nextInt(range);
+            NavigableMap<Integer, String> view = map, modelView = model;
+            if (r.nextInt(3) == 0) {
+                int lo = r.nextInt(range), hi = r.nextInt(range);
+                if (model.comparator() == null ? lo > hi : lo < hi) {
+                    int swap = lo;
+                    lo = hi;
+                    hi = swap;
+                }
+                boolean loInclusive = r.nextBoolean(), hiInclusive = r.nextBoolean();
+                view = map.subMap(lo, loInclusive, hi, hiInclusive);
+                modelView = model.subMap(lo, loInclusive, hi, hiInclusive);
+                if (r.nextBoolean()) {
+                    view = view.descendingMap();
+                    modelView = modelView.descendingMap();
+                }
+            }
+            int kind = r.nextInt(5);
+            if (kind <= 1) {
+                String expected = null;
+                boolean outOfRange = false;
+                try {
+                    expected = modelView.put(k, "p" + op);
+                } catch (IllegalArgumentException e) {   // k is out of the view's range
+                    outOfRange = true;
+                }
+                try {
+                    require(Objects.equals(view.put(k, "p" + op), expected) && !outOfRange, "put(" + k + ")");
+                } catch (IllegalArgumentException e) {
+                    require(outOfRange, "put(" + k + ") threw " + e);
+                }
+            }
+            else if (kind == 2) {
+                require(Objects.equals(view.remove(k), modelView.remove(k)), "remove(" + k + ")");
+            }
+            else if (kind == 3 && !modelView.isEmpty()) {
+                Map.Entry<Integer, String> first = r.nextBoolean() ? view.pollFirstEntry() : view.pollLastEntry();
+                require(first != null && modelView.remove(first.getKey()) != null, "poll returned " + first);
+            }
+            else if (!modelView.isEmpty()) {                // remove through the iterator
+                Iterator<Integer> it = view.keySet().iterator(), modelIt = modelView.keySet().iterator();
+                int skip = r.nextInt(modelView.size());
+                for (int j = 0; j <= skip; j++) {
+                    require(it.next().equals(modelIt.next()), "iteration order");
+                }
+                it.remove();
+                modelIt.remove();
+            }
+            require(new ArrayList<>(view.entrySet()).equals(new ArrayList<>(modelView.entrySet())), "entries of the view");
+            require(new ArrayList<>(map.entrySet()).equals(new ArrayList<>(model.entrySet())), "entries");
+            require(view.size() == modelView.size(), "size of the view");
+            require(Objects.equals(view.floorKey(k), modelView.floorKey(k)), "floorKey(" + k + ")");
+            require(Objects.equals(view.ceilingKey(k), modelView.ceilingKey(k)), "ceilingKey(" + k + ")");
+            require(Objects.equals(view.lowerKey(k), modelView.lowerKey(k)), "lowerKey(" + k + ")");
+            require(Objects.equals(view.higherKey(k), modelView.higherKey(k)), "higherKey(" + k + ")");
+            if (!modelView.isEmpty()) {
+                int index = r.nextInt(modelView.size());
+                Map.Entry<Integer, String> entry = ((WAVLMap<Integer, String>) view).entryAt(index);
+                require(new ArrayList<>(modelView.keySet()).get(index).equals(entry.getKey()), "entryAt(" + index + ")");
+                require(((WAVLMap<Integer, String>) view).indexOf(entry.getKey()) == index, "indexOf(" + entry.getKey() + ")");
+            }
+        }
+    }
+
+    /**
+     * freezes random trees, of every size up to a few levels of the layout, and queries both sides
+     */
+    private static void testFreeze(Random r) {
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = r.nextInt(4) == 0 ? r.nextInt(8) : 1 + r.nextInt(600);
+        WAVLTree tree = randomTree(r, model, -range / 2, range - range / 2);
+        int[] gone = randomKeys(r, batchSize(r, tree.size()), range);
+        for (int j = 0; j < gone.length; j++) {
+            gone[j] -= range / 2;
+            model.remove(gone[j]);
+        }
+        tree.deleteAll(gone);
+        FrozenWAVLTree frozen = tree.freeze();
+        tree.insert(range, "after");                  // later changes must not reach the copy
+        tree.delete(tree.getMin().getKey());
+        require(frozen.size() == model.size() && frozen.empty() == model.isEmpty(), "size " + frozen.size() + ", expected " + model.size());
+        require(Objects.equals(frozen.min(), model.isEmpty() ? null : model.firstEntry().getValue()), "min");
+        require(Objects.equals(frozen.max(), model.isEmpty() ? null : model.lastEntry().getValue()), "max");
+        int[] keys = frozen.keysToArray();
+        String[] infos = frozen.infoToArray();
+        int i = 0;
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(keys[i] == e.getKey() && infos[i].equals(e.getValue()), "item " + i);
+            i++;
+            require(frozen.selectKey(i) == e.getKey() && frozen.select(i).equals(e.getValue()), "select(" + i + ")");
+            require(frozen.rank(e.getKey()) == i, "rank(" + e.getKey() + ")");
+        }
+        require(frozen.select(0) == null && frozen.select(model.size() + 1) == null, "select out of range");
+        int[] probes = {Integer.MIN_VALUE, Integer.MAX_VALUE, -range, range, 0};
+        for (int j = 0; j < 40; j++) {
+            int k = j < probes.length ? probes[j] : r.nextInt(range + 2) - range / 2 - 1;
+            require(Objects.equals(frozen.search(k), model.get(k)), "search(" + k + ")");
+            require(frozen.rank(k) == model.headMap(k, true).size(), "rank(" + k + ")");
+            int hi = k + r.nextInt(range + 1);
+            if (hi >= k) {
+                require(frozen.countRange(k, hi) == model.subMap(k, true, hi, true).size(), "countRange(" + k + ", " + hi + ")");
+                ArrayList<Integer> visited = new ArrayList<>();
+                frozen.forEach(k, hi, (key, info) -> visited.add(key));
+                require(visited.equals(new ArrayList<>(model.subMap(k, true, hi, true).keySet())), "forEach(" + k + ", " + hi + ")");
+            }
+        }
+    }
+
+    /**
+     * lists the items in key order, to check that summaries are combined in order
+     */
+    private static final WAVLAggregate<String> LISTING = new WAVLAggregate<String>() {
+        public String identity() {
+            return "";
+        }
+
+        public String of(int key, String value) {
+            return key + "=" + value + ";";
+        }
+
+        public String combine(String left, String right) {
+            return left + right;
+        }
+    };
+
+    private static String listing(Map<Integer, String> items) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, String> e : items.entrySet()) {
+            sb.append(LISTING.of(e.getKey(), e.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static void requireListing(AggregateWAVLTree<String> tree, TreeMap<Integer, String> model, Random r, int range) {
+        require(checkTree(tree) == model.size(), "size " + tree.size() + ", expected " + model.size());
+        require(tree.aggregate().equals(listing(model)), "aggregate " + tree.aggregate());
+        for (int j = 0; j < 4; j++) {
+            int lo = r.nextInt(range + 2) - 1, hi = lo + r.nextInt(range / 2 + 1) - 2;
+            String expected = lo > hi ? "" : listing(model.subMap(lo, true, hi, true));
+            require(tree.rangeAggregate(lo, hi).equals(expected), "rangeAggregate(" + lo + ", " + hi + ")");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void testAggregates(Random r) {
+        AggregateWAVLTree<String> tree = new AggregateWAVLTree<>(LISTING, r.nextInt(3) * 8);
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(300);
+        for (int op = 0; op < OPERATIONS; op++) {
+            int kind = r.nextInt(7);
+            int k = r.nextInt(range);
+            if (kind <= 1) {
+                tree.insert(k, "i" + op);
+                model.putIfAbsent(k, "i" + op);
+            }
+            else if (kind == 2) {
+                tree.delete(k);
+                model.remove(k);
+            }
+            else if (kind == 3) {
+                require(Objects.equals(tree.update(k, "u" + op), model.get(k)), "update(" + k + ")");
+                if (model.containsKey(k)) {
+                    model.put(k, "u" + op);
+                }
+            }
+            else if (kind == 4) {
+                int[] keys = randomKeys(r, batchSize(r, tree.size()), range);
+                String[] infos = infos(keys);
+                tree.insertAll(keys, infos);
+                for (int j = 0; j < keys.length; j++) {
+                    model.putIfAbsent(keys[j], infos[j]);
+                }
+            }
+            else if (kind == 5) {
+                int[] keys = randomKeys(r, batchSize(r, tree.size()), range);
+                tree.deleteAll(keys);
+                for (int key : keys) {
+                    model.remove(key);
+                }
+            }
+            else {                                          // split, change the halves and put them together again
+                WAVLTree[] parts = tree.split(k);
+                AggregateWAVLTree<String> low = (AggregateWAVLTree<String>) parts[0], high = (AggregateWAVLTree<String>) parts[1];
+                TreeMap<Integer, String> lowModel = new TreeMap<>(model.headMap(k)), highModel = new TreeMap<>(model.tailMap(k));
+                requireListing(low, lowModel, r, range);
+                requireListing(high, highModel, r, range);
+                if (r.nextBoolean() && !lowModel.isEmpty()) {
+                    int last = lowModel.lastKey();
+                    String value = lowModel.remove(last);
+                    low.delete(last);
+                    tree = (AggregateWAVLTree<String>) WAVLTree.join(low, last, value, high);
+                }
+                else {
+                    tree = (AggregateWAVLTree<String>) (r.nextBoolean() ? low.union(high) : high.union(low));
+                }
+            }
+            requireListing(tree, model, r, range);
+        }
+        int kind = r.nextInt(3);                          // trees whose nodes must not be mixed with tree's
+        WAVLTree other = kind == 0 ? new AggregateWAVLTree<>(WAVLAggregate.min(Comparator.<String>naturalOrder()))
+                : kind == 1 ? new WAVLTree() : new IntervalWAVLTree();
+        other.insert(range + 1, "other");
+        for (int operation = 0; operation < 4; operation++) {
+            try {
+                if (operation == 0) {
+                    WAVLTree.join(tree, range, "x", other);
+                }
+                else if (operation == 1) {
+                    tree.union(other);
+                }
+                else if (operation == 2) {
+                    tree.intersect(other);
+                }
+                else {
+                    other.difference(tree);
+                }
+                require(false, "set operation " + operation + " mixed different aggregates");
+            } catch (IllegalArgumentException e) {
+                requireListing(tree, model, r, range);
+                require(other.size() == 1, "the other tree was changed");
+            }
+        }
+    }
+
+    private static void testIntervals(Random r) {
+        IntervalWAVLTree tree = new IntervalWAVLTree();
+        TreeMap<Integer, Integer> ends = new TreeMap<>();
+        int range = 400;
+        for (int op = 0; op < OPERATIONS; op++) {
+            int kind = r.nextInt(6);
+            if (kind <= 1) {
+                int start = r.nextInt(range);
+                int end = start + r.nextInt(40);
+                int count = tree.insert(start, end, "i" + start);
+                require((count == -1) == ends.containsKey(start), "insert(" + start + ") returned " + count);
+                ends.putIfAbsent(start, end);
+            }
+            else if (kind == 2) {
+                int k = r.nextInt(range);
+                int count = tree.delete(k);
+                require((count == -1) == (ends.remove(k) == null), "delete(" + k + ") returned " + count);
+            }
+            else if (kind <= 4) {
+                int[] keys = randomKeys(r, batchSize(r, tree.size()), range);
+                tree.insertAll(keys, infos(keys));
+                for (int k : keys) {
+                    ends.putIfAbsent(k, k);
+                }
+            }
+            else {
+                int[] keys = randomKeys(r, batchSize(r, tree.size()), range);
+                tree.deleteAll(keys);
+                for (int k : keys) {
+                    ends.remove(k);
+                }
+            }
+            require(checkTree(tree) == ends.size(), "size " + tree.size() + ", expected " + ends.size());
+            int maxEnd = Integer.MIN_VALUE;
+            for (Map.Entry<Integer, Integer> e : ends.entrySet()) {
+                require(tree.end(e.getKey(), -1) == e.getValue(), "end of " + e.getKey() + " is " + tree.end(e.getKey(), -1) + ", expected " + e.getValue());
+                maxEnd = Math.max(maxEnd, e.getValue());
+            }
+            require(tree.maxEnd() == maxEnd, "maxEnd " + tree.maxEnd() + ", expected " + maxEnd);
+            int lo = r.nextInt(range), hi = lo + r.nextInt(60);
+            Iterator<IntervalWAVLTree.IntervalNode> it = tree.overlapping(lo, hi);
+            for (Map.Entry<Integer, Integer> e : ends.headMap(hi, true).entrySet()) {
+                if (e.getValue() >= lo) {
+                    require(it.hasNext() && it.next().getStart() == e.getKey(), "overlapping(" + lo + ", " + hi + ") misses " + e.getKey());
+                }
+            }
+            require(!it.hasNext(), "overlapping(" + lo + ", " + hi + ") reports too much");
+        }
+    }
+
+    private static void testMultiset(Random r) {
+        MultisetWAVLTree tree = new MultisetWAVLTree();
+        TreeMap<Integer, ArrayList<String>> occurrences = new TreeMap<>();
+        int range = 200;
+        for (int op = 0; op < OPERATIONS; op++) {
+            int kind = r.nextInt(6);
+            if (kind <= 1) {
+                int k = r.nextInt(range);
+                String info = "i" + op;
+                tree.insert(k, info);
+                occurrences.computeIfAbsent(k, key -> new ArrayList<>()).add(info);
+            }
+            else if (kind == 2) {
+                int k = r.nextInt(range);
+                ArrayList<String> list = occurrences.get(k);
+                require((tree.remove(k) == -1) == (list == null), "remove(" + k + ")");
+                if (list != null) {
+                    list.remove(list.size() - 1);
+                    if (list.isEmpty()) {
+                        occurrences.remove(k);
+                    }
+                }
+            }
+            else if (kind == 3) {
+                int[] keys = randomKeys(r, 1 + r.nextInt(8), range);
+                String[] infos = infos(keys);
+                tree.insertAll(keys, infos);
+                for (int j = 0; j < keys.length; j++) {
+                    occurrences.computeIfAbsent(keys[j], key -> new ArrayList<>()).add(infos[j]);
+                }
+            }
+            else {
+                int[] keys = randomKeys(r, batchSize(r, tree.size()), range);
+                tree.deleteAll(keys);
+                for (int k : keys) {
+                    occurrences.remove(k);
+                }
+            }
+            require(checkTree(tree) == occurrences.size(), "size " + tree.size() + ", expected " + occurrences.size());
+            ArrayList<String> all = new ArrayList<>();
+            for (Map.Entry<Integer, ArrayList<String>> e : occurrences.entrySet()) {
+                require(tree.count(e.getKey()) == e.getValue().size(), "count of " + e.getKey());
+                require(Arrays.equals(tree.values(e.getKey()), e.getValue().toArray()), "values of " + e.getKey());
+                all.addAll(e.getValue());
+                require(tree.rank(e.getKey()) == all.size(), "rank of " + e.getKey());
+            }
+            require(tree.totalCount() == all.size(), "totalCount " + tree.totalCount() + ", expected " + all.size());
+            for (int i = 1; i <= all.size(); i++) {
+                require(all.get(i - 1).equals(tree.select(i)), "select(" + i + ")");
+            }
+            int lo = r.nextInt(range), hi = lo + r.nextInt(50);
+            int expected = 0;
+            for (ArrayList<String> list : occurrences.subMap(lo, true, hi, true).values()) {
+                expected += list.size();
+            }
+            require(tree.countRange(lo, hi) == expected, "countRange(" + lo + ", " + hi + ")");
+        }
+    }
+
+    /**
+     * threads change a StripedWAVLTree and a ConcurrentSkipListMap at once, with few stripes so that they
+     * contend for the locks. Each thread owns the keys that are its number modulo the thread count: the answers
+     * for its own keys must match the skip list's, and ordered queries, which race with the other threads,
+     * must at least respect their bounds and find its own keys. Afterwards both maps must hold the same items
+     */
+    private static void testStriped(Random r) {
+        int threads = 2 + r.nextInt(4), range = 1 + r.nextInt(r.nextBoolean() ? 64 : 4000);
+        StripedWAVLTree tree = new StripedWAVLTree(1 + r.nextInt(8));
+        ConcurrentSkipListMap<Integer, String> model = new ConcurrentSkipListMap<>();
+        long seed = r.nextLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                Random tr = new Random(seed + id);
+                try {
+                    for (int op = 0; op < 20 * OPERATIONS; op++) {
+                        int k = (tr.nextInt(range) - range / 2) * threads + id;
+                        String info = id + ":" + op;
+                        int kind = tr.nextInt(5);
+                        if (kind == 0) {
+                            require(Objects.equals(tree.put(k, info), model.put(k, info)), "put(" + k + ")");
+                        }
+                        else if (kind == 1) {
+                            require(Objects.equals(tree.putIfAbsent(k, info), model.putIfAbsent(k, info)), "putIfAbsent(" + k + ")");
+                        }
+                        else if (kind == 2) {
+                            require(Objects.equals(tree.remove(k), model.remove(k)), "remove(" + k + ")");
+                        }
+                        else if (kind == 3) {
+                            require(Objects.equals(tree.get(k), model.get(k)) && tree.containsKey(k) == model.containsKey(k), "get(" + k + ")");
+                        }
+                        else {
+                            boolean own = model.containsKey(k);       // no other thread adds or removes k meanwhile
+                            Integer floor = tree.floorKey(k), ceiling = tree.ceilingKey(k);
+                            Integer lower = tree.lowerKey(k), higher = tree.higherKey(k);
+                            require(own ? floor == k && ceiling == k : (floor == null || floor < k) && (ceiling == null || ceiling > k),
+                                    "floorKey/ceilingKey(" + k + ") " + floor + "/" + ceiling);
+                            require((lower == null || lower < k) && (higher == null || higher > k), "lowerKey/higherKey(" + k + ")");
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, "thread " + id + ": " + e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        require(failure.get() == null, String.valueOf(failure.get()));
+        require(tree.size() == model.size() && tree.isEmpty() == model.isEmpty(), "size " + tree.size() + ", expected " + model.size());
+        int[] keys = tree.keysToArray();
+        int j = 0;
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(keys[j++] == e.getKey() && tree.get(e.getKey()).equals(e.getValue()), "item " + (j - 1));
+        }
+        if (!model.isEmpty()) {
+            require(tree.firstKey() == model.firstKey() && tree.lastKey() == model.lastKey(), "firstKey/lastKey");
+        }
+        int span = range * threads;
+        for (int probe = 0; probe < 40; probe++) {
+            int k = r.nextInt(2 * span + 1) - span;
+            require(Objects.equals(tree.floorKey(k), model.floorKey(k)) && Objects.equals(tree.ceilingKey(k), model.ceilingKey(k))
+                    && Objects.equals(tree.lowerKey(k), model.lowerKey(k)) && Objects.equals(tree.higherKey(k), model.higherKey(k)),
+                    "bounds of " + k);
+        }
+    }
+
+    /**
+     * runs random inserts and deletes on a MappedWAVLTree over three sessions, closing and reopening its file
+     * in between, and tries to open the file a second time while it is held. Then damaged copies of the file
+     * (a short header, a wrong magic number or version, missing records) must be rejected and left unchanged
+     */
+    private static void testMapped(Random r) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("wavl");
+            Path file = dir.resolve("tree");
+            TreeMap<Integer, String> model = new TreeMap<>();
+            int range = 1 + r.nextInt(r.nextBoolean() ? 40 : 600);
+            for (int session = 0; session < 3; session++) {
+                try (MappedWAVLTree tree = new MappedWAVLTree(file, 8)) {
+                    requireIndexedItems(tree, model);       // what the last session left
+                    for (int op = 0; op < OPERATIONS; op++) {
+                        int k = r.nextInt(range);
+                        if (r.nextInt(3) > 0) {
+                            String info = r.nextInt(8) == 0 ? null : "m" + r.nextInt(1000);
+                            int count = tree.insert(k, info);
+                            require((count == -1) == model.containsKey(k), "insert(" + k + ") returned " + count);
+                            if (count != -1) {
+                                model.put(k, info);
+                            }
+                        }
+                        else {
+                            boolean present = model.containsKey(k);
+                            model.remove(k);
+                            int count = tree.delete(k);
+                            require((count == -1) == !present, "delete(" + k + ") returned " + count);
+                        }
+                    }
+                    requireIndexedItems(tree, model);
+                    if (session == 1) {
+                        try (MappedWAVLTree second = new MappedWAVLTree(file, 8)) {
+                            require(false, "a held file was opened again");
+                        } catch (IOException e) {
+                            require(e.getMessage().contains("used by another"), "second open: " + e);
+                        }
+                        requireIndexedItems(tree, model);   // the holder is not disturbed
+                    }
+                }
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            byte[][] damaged = {Arrays.copyOf(bytes, 1 + r.nextInt(63)), bytes.clone(), bytes.clone(),
+                    Arrays.copyOf(bytes, 64 + r.nextInt(bytes.length - 64))};
+            damaged[1][r.nextInt(4)] ^= 1 + r.nextInt(255);        // the magic number
+            damaged[2][4 + r.nextInt(4)] ^= 1 + r.nextInt(255);    // the version
+            for (int j = 0; j < damaged.length; j++) {
+                Path copy = dir.resolve("damaged" + j);
+                Files.write(copy, damaged[j]);
+                try (MappedWAVLTree tree = new MappedWAVLTree(copy, 8)) {
+                    require(false, "damaged file " + j + " was opened");
+                } catch (IOException e) {
+                    require(Arrays.equals(Files.readAllBytes(copy), damaged[j]), "damaged file " + j + " was changed");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * runs the same inserts and deletes on an IntArrayWAVLTree and a WAVLTree, which must count the same
+     * rebalancing operations, and checks the items, select and search against a TreeMap. Every round ends
+     * with heavy churn: most items are deleted and as many new ones inserted, which must all land in
+     * slots taken from the free list, so the slots in use stay those in use before the deletes
+     */
+    private static void testIntArray(Random r) {
+        IntArrayWAVLTree tree = new IntArrayWAVLTree(r.nextInt(4) == 0 ? 0 : r.nextInt(64));
+        WAVLTree reference = new WAVLTree();
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 50 : 1000);
+        for (int op = 0; op < 4 * OPERATIONS; op++) {
+            int k = r.nextInt(range);
+            if (r.nextInt(3) > 0) {
+                int count = tree.insert(k, "a" + op);
+                require(count == reference.insert(k, "a" + op), "insert(" + k + ") counted " + count);
+                model.putIfAbsent(k, "a" + op);
+            }
+            else {
+                int count = tree.delete(k);
+                require(count == reference.delete(k), "delete(" + k + ") counted " + count);
+                model.remove(k);
+            }
+            if (op % 16 == 0) {
+                requireIndexedItems(tree, model);
+            }
+        }
+        for (int churn = 0; churn < 3; churn++) {
+            int[] before = requireIndexedItems(tree, model);
+            ArrayList<Integer> keys = new ArrayList<>(model.keySet());
+            Collections.shuffle(keys, r);
+            int gone = keys.size() - keys.size() / 8;
+            for (int j = 0; j < gone; j++) {
+                int k = keys.get(j);
+                require(tree.delete(k) == reference.delete(k), "delete(" + k + ") while churning");
+                model.remove(k);
+            }
+            for (int inserted = 0; inserted < gone; ) {
+                int k = r.nextInt(2 * range + gone);
+                if (!model.containsKey(k)) {
+                    require(tree.insert(k, "c" + k) == reference.insert(k, "c" + k), "insert(" + k + ") while churning");
+                    model.put(k, "c" + k);
+                    inserted++;
+                }
+            }
+            int[] after = requireIndexedItems(tree, model);
+            Arrays.sort(before);
+            for (int node : after) {
+                require(Arrays.binarySearch(before, node) >= 0, "slot " + node + " was not taken from the free list");
+            }
+        }
+        require(Arrays.equals(tree.keysToArray(), reference.keysToArray()), "keys differ from WAVLTree's");
+    }
+
+    /**
+     * runs random inserts and deletes on a PersistentWAVLTree, a WAVLTree and a TreeMap, taking a snapshot
+     * now and then together with a copy of the TreeMap. The insert and delete results must match the
+     * WAVLTree's, the current version must match the TreeMap, and every snapshot taken so far must still
+     * hold exactly the items it was taken with
+     */
+    private static void testPersistent(Random r) {
+        PersistentWAVLTree tree = new PersistentWAVLTree();
+        WAVLTree reference = new WAVLTree();
+        TreeMap<Integer, String> model = new TreeMap<>();
+        ArrayList<PersistentWAVLTree.Snapshot> snapshots = new ArrayList<>();
+        ArrayList<TreeMap<Integer, String>> models = new ArrayList<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 50 : 1000);
+        for (int op = 0; op < 4 * OPERATIONS; op++) {
+            int k = r.nextInt(range);
+            if (r.nextInt(3) > 0) {
+                int count = tree.insert(k, "p" + op);
+                require(count == reference.insert(k, "p" + op), "insert(" + k + ") counted " + count);
+                model.putIfAbsent(k, "p" + op);
+            }
+            else {
+                int count = tree.delete(k);
+                require(count == reference.delete(k), "delete(" + k + ") counted " + count);
+                model.remove(k);
+            }
+            require(tree.size() == model.size(), "size " + tree.size() + " after op " + op);
+            if (r.nextInt(8) == 0) {
+                snapshots.add(tree.snapshot());
+                models.add(new TreeMap<>(model));
+            }
+        }
+        snapshots.add(tree.snapshot());
+        models.add(model);
+        for (int i = 0; i < snapshots.size(); i++) {
+            requireSnapshot(snapshots.get(i), models.get(i), range);
+        }
+        require(tree.empty() == model.isEmpty(), "empty() is " + tree.empty());
+        require(Arrays.equals(tree.keysToArray(), reference.keysToArray()), "keys differ from WAVLTree's");
+        require(Arrays.equals(tree.infoToArray(), reference.infoToArray()), "infos differ from WAVLTree's");
+        require(Objects.equals(tree.min(), reference.min()) && Objects.equals(tree.max(), reference.max()), "min/max differ from WAVLTree's");
+        for (int k = -1; k <= range; k++) {
+            require(Objects.equals(tree.search(k), model.get(k)), "search(" + k + ")");
+        }
+    }
+
+    /**
+     * checks that a snapshot holds exactly the items of the model
+     */
+    private static void requireSnapshot(PersistentWAVLTree.Snapshot snapshot, TreeMap<Integer, String> model, int range) {
+        require(snapshot.size() == model.size(), "snapshot size " + snapshot.size() + ", expected " + model.size());
+        require(snapshot.empty() == model.isEmpty(), "snapshot empty() is " + snapshot.empty());
+        int[] keys = snapshot.keysToArray();
+        String[] infos = snapshot.infoToArray();
+        require(keys.length == model.size() && infos.length == model.size(), "snapshot arrays have the wrong length");
+        int i = 0;
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(keys[i] == e.getKey() && infos[i].equals(e.getValue()), "snapshot item " + i + " is " + keys[i]);
+            require(snapshot.select(i + 1).equals(e.getValue()), "snapshot select(" + (i + 1) + ")");
+            i++;
+        }
+        require(Objects.equals(snapshot.min(), model.isEmpty() ? null : model.firstEntry().getValue()), "snapshot min()");
+        require(Objects.equals(snapshot.max(), model.isEmpty() ? null : model.lastEntry().getValue()), "snapshot max()");
+        for (int k = -1; k <= range; k++) {
+            require(Objects.equals(snapshot.search(k), model.get(k)), "snapshot search(" + k + ")");
+        }
+    }
+
+    /**
+     * walks cursors over a random tree and an empty one, checking every position against a TreeMap:
+     * a full forward and backward walk that must stop at both ends and stay unpositioned there,
+     * seeks to keys in the tree, between them and beyond both ends, and forEach, which must visit
+     * the items in order
+     */
+    private static void testCursor(Random r) {
+        requireCursor(r, new WAVLTree(), new TreeMap<>(), 10);
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 20 : 500);
+        requireCursor(r, randomTree(r, model, 0, range), model, range);
+    }
+
+    private static void requireCursor(Random r, WAVLTree tree, TreeMap<Integer, String> model, int range) {
+        WAVLCursor cursor = tree.cursor();
+        require(!cursor.valid() && !cursor.next() && !cursor.prev(), "a new cursor is positioned");
+        requireUnpositioned(cursor);
+        boolean found = cursor.first();
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            require(found && cursor.valid(), "forward walk stopped before " + e.getKey());
+            require(cursor.key() == e.getKey() && cursor.value().equals(e.getValue()), "forward walk at " + cursor.key() + ", expected " + e.getKey());
+            found = cursor.next();
+        }
+        require(!found && !cursor.valid(), "forward walk went past the largest key");
+        require(!cursor.next() && !cursor.prev(), "cursor moved after walking off the end");
+        requireUnpositioned(cursor);
+        found = cursor.last();
+        for (Map.Entry<Integer, String> e : model.descendingMap().entrySet()) {
+            require(found && cursor.key() == e.getKey() && cursor.value().equals(e.getValue()), "backward walk at " + e.getKey());
+            found = cursor.prev();
+        }
+        require(!found && !cursor.valid(), "backward walk went past the smallest key");
+        requireUnpositioned(cursor);
+        for (int j = 0; j < 40; j++) {
+            int k = r.nextInt(range + 4) - 2;
+            Map.Entry<Integer, String> ceiling = model.ceilingEntry(k);
+            require(cursor.seek(k) == (ceiling != null) && cursor.valid() == (ceiling != null), "seek(" + k + ")");
+            if (ceiling == null) {
+                requireUnpositioned(cursor);
+                continue;
+            }
+            require(cursor.key() == ceiling.getKey() && cursor.value().equals(ceiling.getValue()), "seek(" + k + ") landed on " + cursor.key());
+            boolean forward = r.nextBoolean();
+            Map.Entry<Integer, String> step = forward ? model.higherEntry(ceiling.getKey()) : model.lowerEntry(ceiling.getKey());
+            boolean moved = forward ? cursor.next() : cursor.prev();
+            require(moved == (step != null), "step from " + ceiling.getKey());
+            require(step == null || cursor.key() == step.getKey(), "step from " + ceiling.getKey() + " landed on the wrong key");
+        }
+        require(cursor.seek(Integer.MIN_VALUE) == !model.isEmpty(), "seek(MIN_VALUE)");
+        require(!cursor.seek(Integer.MAX_VALUE), "seek(MAX_VALUE)");
+        Iterator<Map.Entry<Integer, String>> expected = model.entrySet().iterator();
+        tree.forEach((key, value) -> {
+            require(expected.hasNext(), "forEach visited " + key + " after the last item");
+            Map.Entry<Integer, String> e = expected.next();
+            require(key == e.getKey() && value.equals(e.getValue()), "forEach visited " + key + ", expected " + e.getKey());
+        });
+        require(!expected.hasNext(), "forEach stopped early");
+    }
+
+    /**
+     * checks that cursor is unpositioned, so key and value throw
+     */
+    private static void requireUnpositioned(WAVLCursor cursor) {
+        require(!cursor.valid(), "cursor is positioned");
+        try {
+            cursor.key();
+            require(false, "key() of an unpositioned cursor returned");
+        } catch (NoSuchElementException e) {    // expected
+        }
+        try {
+            cursor.value();
+            require(false, "value() of an unpositioned cursor returned");
+        } catch (NoSuchElementException e) {    // expected
+        }
+    }
+
+    /**
+     * asks a random tree for the floor, ceiling, lower and higher items of every key in its range,
+     * of keys below its minimum and above its maximum, and of the extreme int values, and compares
+     * the nodes, the infos and the keys (with a missing value outside the range) with a TreeMap's
+     */
+    private static void testBounds(Random r) {
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 20 : 500);
+        WAVLTree tree = r.nextInt(16) == 0 ? new WAVLTree() : randomTree(r, model, 0, range);
+        int missing = -1000 - r.nextInt(1000);
+        for (int k = -3; k <= range + 3; k++) {
+            requireBounds(tree, model, k, missing);
+        }
+        requireBounds(tree, model, Integer.MIN_VALUE, missing);
+        requireBounds(tree, model, Integer.MAX_VALUE, missing);
+    }
+
+    private static void requireBounds(WAVLTree tree, TreeMap<Integer, String> model, int k, int missing) {
+        requireBound("floor", k, tree.floorNode(k), tree.floor(k), tree.floorKey(k, missing), model.floorEntry(k), missing);
+        requireBound("ceiling", k, tree.ceilingNode(k), tree.ceiling(k), tree.ceilingKey(k, missing), model.ceilingEntry(k), missing);
+        requireBound("lower", k, tree.lowerNode(k), tree.lower(k), tree.lowerKey(k, missing), model.lowerEntry(k), missing);
+        requireBound("higher", k, tree.higherNode(k), tree.higher(k), tree.higherKey(k, missing), model.higherEntry(k), missing);
+    }
+
+    private static void requireBound(String query, int k, WAVLNode node, String info, int key, Map.Entry<Integer, String> expected, int missing) {
+        String what = query + "(" + k + ")";
+        if (expected == null) {
+            require(node == null && info == null && key == missing, what + " found an item");
+            return;
+        }
+        require(node != null && node.getKey() == expected.getKey() && node.getValue().equals(expected.getValue()), what + "Node, expected " + expected.getKey());
+        require(expected.getValue().equals(info), what + " is " + info + ", expected " + expected.getValue());
+        require(key == expected.getKey(), what + "Key is " + key + ", expected " + expected.getKey());
+    }
+
+    /**
+     * compares range and countRange on a random tree with a TreeMap's subMap, for random bounds,
+     * empty and single-key ranges, reversed bounds, ranges between two keys or beyond the items that
+     * match nothing, and the full int range. An exhausted range iterator must throw from next
+     */
+    private static void testRange(Random r) {
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 20 : 500);
+        WAVLTree tree = r.nextInt(16) == 0 ? new WAVLTree() : randomTree(r, model, 0, range);
+        requireRange(tree, model, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        requireRange(tree, model, Integer.MAX_VALUE, Integer.MIN_VALUE);
+        requireRange(tree, model, -10, -1);
+        requireRange(tree, model, range, range + 10);
+        for (int j = 0; j < 40; j++) {
+            int lo = r.nextInt(range + 6) - 3;
+            int hi = r.nextInt(4) == 0 ? lo : r.nextInt(range + 6) - 3;  // a single key, or maybe reversed bounds
+            requireRange(tree, model, lo, hi);
+        }
+        for (Map.Entry<Integer, String> e : model.entrySet()) {
+            Integer next = model.higherKey(e.getKey());
+            if (next != null && next - e.getKey() > 1) {
+                requireRange(tree, model, e.getKey() + 1, next - 1);    // between two keys
+            }
+        }
+    }
+
+    private static void requireRange(WAVLTree tree, TreeMap<Integer, String> model, int lo, int hi) {
+        NavigableMap<Integer, String> expected = lo > hi ? Collections.emptyNavigableMap() : model.subMap(lo, true, hi, true);
+        String what = "[" + lo + ", " + hi + "]";
+        require(tree.countRange(lo, hi) == expected.size(), "countRange" + what + " is " + tree.countRange(lo, hi) + ", expected " + expected.size());
+        Iterator<WAVLNode> it = tree.range(lo, hi);
+        for (Map.Entry<Integer, String> e : expected.entrySet()) {
+            require(it.hasNext(), "range" + what + " stopped before " + e.getKey());
+            WAVLNode node = it.next();
+            require(node.getKey() == e.getKey() && node.getValue().equals(e.getValue()), "range" + what + " gave " + node.getKey() + ", expected " + e.getKey());
+        }
+        require(!it.hasNext(), "range" + what + " went past " + hi);
+        try {
+            it.next();
+            require(false, "next() of an exhausted range" + what + " returned");
+        } catch (NoSuchElementException e) {    // expected
+        }
+    }
+
+    /**
+     * builds trees with fromSorted from 0, 1, 2^k-1, 2^k and 2^k+1 increasing keys, which must pass
+     * checkTree and hold the items in order, and stay valid under later inserts and deletes.
+     * Keys out of order and mismatched array lengths must be rejected
+     */
+    private static void testFromSorted(Random r) {
+        int power = 1 << r.nextInt(12);
+        for (int n : new int[] {0, 1, power - 1, power, power + 1}) {
+            int[] keys = new int[n];
+            for (int j = 0, k = r.nextInt(5) - 2; j < n; j++, k += 1 + r.nextInt(3)) {
+                keys[j] = k;
+            }
+            String[] infos = infos(keys);
+            WAVLTree tree = WAVLTree.fromSorted(keys, infos);
+            TreeMap<Integer, String> model = new TreeMap<>();
+            for (int j = 0; j < n; j++) {
+                model.put(keys[j], infos[j]);
+            }
+            requireItems(tree, model);
+            int range = n == 0 ? 10 : keys[n - 1] + 3;
+            for (int op = 0; op < OPERATIONS; op++) {
+                int k = r.nextInt(range);
+                if (r.nextBoolean()) {
+                    tree.insert(k, "s" + k);
+                    model.putIfAbsent(k, "s" + k);
+                }
+                else {
+                    tree.delete(k);
+                    model.remove(k);
+                }
+            }
+            requireItems(tree, model);
+        }
+        for (int[] keys : new int[][] {{2, 1}, {1, 1}, {0, 5, 3}}) {
+            try {
+                WAVLTree.fromSorted(keys, infos(keys));
+                require(false, "fromSorted accepted " + Arrays.toString(keys));
+            } catch (IllegalArgumentException e) {    // expected
+            }
+        }
+        try {
+            WAVLTree.fromSorted(new int[] {1, 2}, new String[] {"a"});
+            require(false, "fromSorted accepted two keys and one info");
+        } catch (IllegalArgumentException e) {    // expected
+        }
+    }
+
+    /**
+     * builds trees of 8k to 32k items, above the sizes at which parallelFromSorted and parallelForEach
+     * split their work into tasks. parallelFromSorted must pass checkTree and build the same shape as
+     * fromSorted, and parallelForEach must visit every item of forEach exactly once
+     */
+    private static void testParallel(Random r) {
+        int n = (1 << 13) + r.nextInt(3 << 13);
+        int[] keys = new int[n];
+        for (int j = 0, k = r.nextInt(1000) - 500; j < n; j++, k += 1 + r.nextInt(4)) {
+            keys[j] = k;
+        }
+        String[] infos = infos(keys);
+        WAVLTree tree = WAVLTree.parallelFromSorted(keys, infos);
+        WAVLTree reference = WAVLTree.fromSorted(keys, infos);
+        require(checkTree(tree) == n, "parallelFromSorted built " + tree.size() + " of " + n + " items");
+        Iterator<WAVLNode> built = tree.iterator(), expected = reference.iterator();
+        for (int j = 0; j < n; j++) {
+            WAVLNode node = built.next(), other = expected.next();
+            require(node.getKey() == other.getKey() && node.getValue().equals(other.getValue()), "item " + j + " is " + node.getKey());
+            require(node.getRank() == other.getRank() && node.getSubtreeSize() == other.getSubtreeSize(), "shape differs at " + node.getKey());
+        }
+        if (r.nextBoolean()) {
+            for (int op = 0; op < OPERATIONS; op++) {
+                int k = keys[r.nextInt(n)] + r.nextInt(3) - 1;
+                require(tree.delete(k) == reference.delete(k), "delete(" + k + ")");
+            }
+        }
+        ConcurrentSkipListMap<Integer, String> visited = new ConcurrentSkipListMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        tree.parallelForEach((key, value) -> {
+            if (visited.putIfAbsent(key, value) != null) {
+                failure.compareAndSet(null, "parallelForEach visited " + key + " twice");
+            }
+        });
+        require(failure.get() == null, String.valueOf(failure.get()));
+        Iterator<Map.Entry<Integer, String>> items = visited.entrySet().iterator();
+        reference.forEach((key, value) -> {
+            require(items.hasNext(), "parallelForEach missed " + key);
+            Map.Entry<Integer, String> e = items.next();
+            require(e.getKey() == key && e.getValue().equals(value), "parallelForEach visited " + e.getKey() + ", expected " + key);
+        });
+        require(!items.hasNext(), "parallelForEach visited more items than forEach");
+    }
+
+    /**
+     * splits the key and node spliterators of a random tree recursively, with some keys consumed
+     * before a split, and checks that the parts cover the keys in order with exact sizes and the
+     * promised characteristics. Parallel streams over both must agree with sequential ones
+     */
+    private static void testSpliterator(Random r) {
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 20 : 3000);
+        WAVLTree tree = r.nextInt(16) == 0 ? new WAVLTree() : randomTree(r, model, -range / 2, range);
+        int[] keys = tree.keysToArray();
+        int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED
+                | Spliterator.DISTINCT | Spliterator.NONNULL;
+        ArrayList<Integer> seen = new ArrayList<>();
+        splitAll(r, tree.keySpliterator(), seen, characteristics);
+        require(seen.equals(new ArrayList<>(model.keySet())), "key spliterator parts gave " + seen.size() + " of " + keys.length + " keys");
+        Spliterator<WAVLNode> nodes = tree.spliterator();
+        require(nodes.hasCharacteristics(characteristics) && nodes.getExactSizeIfKnown() == keys.length, "node spliterator");
+        ArrayList<Spliterator<WAVLNode>> parts = new ArrayList<>();
+        parts.add(nodes);
+        for (int j = 0; j < parts.size(); j++) {
+            Spliterator<WAVLNode> prefix = parts.get(j).trySplit();
+            if (prefix != null) {
+                parts.add(j--, prefix);     // split again, starting with the prefix
+            }
+        }
+        require(parts.size() == Math.max(1, keys.length), "node spliterator split into " + parts.size() + " parts");
+        int[] at = {0};
+        for (Spliterator<WAVLNode> part : parts) {
+            require(part.getExactSizeIfKnown() == (keys.length == 0 ? 0 : 1), "a part of " + part.getExactSizeIfKnown() + " nodes");
+            part.forEachRemaining(node -> require(node.getKey() == keys[at[0]++], "node part " + (at[0] - 1) + " is " + node.getKey()));
+        }
+        require(at[0] == keys.length, "node parts gave " + at[0] + " of " + keys.length + " nodes");
+        long sum = 0;
+        for (int k : keys) {
+            sum += k;
+        }
+        require(StreamSupport.intStream(tree.keySpliterator(), true).asLongStream().sum() == sum, "parallel key sum");
+        require(StreamSupport.intStream(tree.keySpliterator(), false).asLongStream().sum() == sum, "sequential key sum");
+        require(StreamSupport.stream(tree.spliterator(), true).mapToLong(WAVLNode::getKey).sum() == sum, "parallel node sum");
+        require(StreamSupport.stream(tree.spliterator(), true).count() == keys.length, "parallel node count");
+    }
+
+    /**
+     * consumes a few keys of spliterator, splits it, and recurses into the split-off prefix and then the
+     * rest, adding the keys to seen in order. Sizes must stay exact and the characteristics the promised ones
+     */
+    private static void splitAll(Random r, Spliterator.OfInt spliterator, ArrayList<Integer> seen, int characteristics) {
+        require(spliterator.characteristics() == characteristics, "characteristics " + spliterator.characteristics());
+        require(spliterator.getComparator() == null, "keys are not in natural order");
+        long size = spliterator.estimateSize();
+        require(spliterator.getExactSizeIfKnown() == size, "getExactSizeIfKnown differs from estimateSize");
+        if (size > 0 && r.nextInt(4) == 0) {
+            require(spliterator.tryAdvance((int k) -> seen.add(k)), "tryAdvance failed with " + size + " keys left");
+            require(spliterator.estimateSize() == --size, "estimateSize after tryAdvance");
+        }
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        if (prefix == null) {
+            require(size <= 1, "trySplit refused " + size + " keys");
+            spliterator.forEachRemaining((int k) -> seen.add(k));
+            require(!spliterator.tryAdvance((int k) -> seen.add(k)), "tryAdvance after forEachRemaining");
+            return;
+        }
+        require(prefix.estimateSize() + spliterator.estimateSize() == size, "trySplit lost keys");
+        require(Math.abs(prefix.estimateSize() - spliterator.estimateSize()) <= 1, "uneven split of " + size + " keys");
+        splitAll(r, prefix, seen, characteristics);
+        splitAll(r, spliterator, seen, characteristics);
+    }
+
+    /**
+     * churns a WAVLTree with a node pool: each round deletes a random share of the items and inserts
+     * as many new ones. Of the deleted nodes, exactly min(capacity, deleted) must be cleared for the pool,
+     * and exactly as many must come back holding new items, so the pool never holds more than its
+     * capacity. checkTree then confirms that reused nodes carry the right rank, size and children
+     */
+    private static void testPool(Random r) {
+        int capacity = r.nextInt(4) == 0 ? 0 : r.nextInt(64);
+        WAVLTree tree = new WAVLTree(capacity);
+        TreeMap<Integer, String> model = new TreeMap<>();
+        int range = 1 + r.nextInt(r.nextBoolean() ? 50 : 1000);
+        for (int op = 0; op < 2 * OPERATIONS; op++) {
+            int k = r.nextInt(range);
+            tree.insert(k, "a" + k);
+            model.putIfAbsent(k, "a" + k);
+        }
+        for (int round = 0; round < 4; round++) {
+            ArrayList<Integer> keys = new ArrayList<>(model.keySet());
+            Collections.shuffle(keys, r);
+            int deleted = r.nextInt(keys.size() + 1);
+            Set<WAVLNode> departed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int j = 0; j < deleted; j++) {
+                int k = keys.get(j);
+                WAVLNode node = tree.ceilingNode(k);
+                require(tree.delete(k) >= 0, "delete(" + k + ") missed");
+                model.remove(k);
+                departed.add(node);
+            }
+            requireItems(tree, model);
+            int cleared = 0;
+            for (WAVLNode node : departed) {
+                if (node.getValue() == null) {
+                    require(node.getLeft() == null && node.getRight() == null, "pooled node keeps its children");
+                    cleared++;
+                }
+            }
+            require(cleared == Math.min(capacity, deleted), cleared + " of " + deleted + " deleted nodes pooled, capacity " + capacity);
+            for (int inserted = 0; inserted < deleted; ) {
+                int k = r.nextInt(2 * range + deleted);
+                if (!model.containsKey(k)) {
+                    require(tree.insert(k, "r" + round + ":" + k) >= 0, "insert(" + k + ") found the key");
+                    model.put(k, "r" + round + ":" + k);
+                    inserted++;
+                }
+            }
+            requireItems(tree, model);
+            int reused = 0;
+            for (WAVLNode node : tree) {
+                if (departed.contains(node)) {
+                    require(node.getValue().equals(model.get(node.getKey())), "reused node " + node.getKey() + " holds " + node.getValue());
+                    reused++;
+                }
+            }
+            require(reused == cleared, reused + " of " + cleared + " pooled nodes reused");
+        }
+        try {
+            new WAVLTree(-1);
+            require(false, "a negative pool capacity was accepted");
+        } catch (IllegalArgumentException e) {    // expected
+        }
+    }
+}
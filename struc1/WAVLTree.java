@@ -1,6 +1,15 @@
 package struc1;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
 *
@@ -10,33 +19,202 @@ import java.util.Arrays;
 * (Haupler, Sen & Tarajan ‘15)
 *
 */
-public class WAVLTree {
-	private WAVLNode external= new WAVLNode(-1, null);
-	private WAVLNode root;
+public class WAVLTree extends AbstractWAVLTree<String, WAVLTree.WAVLNode> implements Iterable<WAVLTree.WAVLNode> {
+	private static final WAVLNode EXTERNAL = new WAVLNode();	//the external node of every tree
 	private WAVLNode min;
 	private WAVLNode max;
+	private final int poolCapacity;
+	private WAVLNode pool;			//deleted nodes kept for reuse, chained through their parent links
+	private int pooled;
 
 	/**
 	  * public WAVLTree()
 	  *initializes an empty tree
 	  */
 	public WAVLTree() {
-		this.root = null;
-		external.rank = (-1);
-		external.setSubtreeSize(0);
+		this(0);
+	}
+
+	/**
+	  * public WAVLTree(int poolCapacity)
+	  *initializes an empty tree that keeps up to poolCapacity deleted nodes and reuses them for new items,
+	  *so that insert and delete do not allocate once the tree has reached its working size.
+	  *A node handed out by the tree (by getRoot, getMin, selectNode, a cursor or an iterator)
+	  *must not be used after its item is deleted, since it may come back holding another item
+	  */
+	public WAVLTree(int poolCapacity) {
+		super(EXTERNAL);
+		if (poolCapacity<0) {
+			throw new IllegalArgumentException("negative pool capacity "+poolCapacity);
+		}
+		this.poolCapacity = poolCapacity;
+	}
+
+	/**
+	  * public static WAVLTree fromSorted(int[] keys, String[] values)
+	  *returns a tree holding the items (keys[i], values[i]), built in linear time.
+	  *keys must be strictly increasing
+	  */
+	public static WAVLTree fromSorted(int[] keys, String[] values) {
+		checkSorted(keys, values);
+		WAVLTree tree = new WAVLTree();
+		tree.rebuild(keys, values, keys.length);
+		return tree;
+	}
+
+	/**
+	  * public static WAVLTree parallelFromSorted(int[] keys, String[] values)
+	  *like fromSorted, but the left and right subtrees of large ranges are built by parallel tasks
+	  *on the common ForkJoinPool
+	  */
+	public static WAVLTree parallelFromSorted(int[] keys, String[] values) {
+		checkSorted(keys, values);
+		WAVLTree tree = new WAVLTree();
+		if (keys.length>0) {
+			tree.root = ForkJoinPool.commonPool().invoke(tree.new BuildTask(keys, values, 0, keys.length));
+			tree.root.parent = null;
+			tree.min = tree.selectNode(tree.root, 0);
+			tree.max = tree.selectNode(tree.root, keys.length-1);
+		}
+		return tree;
+	}
+
+	private static void checkSorted(int[] keys, String[] values) {
+		if (keys.length!=values.length) {
+			throw new IllegalArgumentException("got "+keys.length+" keys but "+values.length+" values");
+		}
+		for (int i=1; i<keys.length; i++) {
+			if (keys[i-1]>=keys[i]) {
+				throw new IllegalArgumentException("keys are not strictly increasing at index "+i);
+			}
+		}
+	}
+
+	/**
+	  * replaces the content of the tree with the first n items of keys and values, which are sorted and distinct
+	  */
+	private void rebuild(int[] keys, String[] values, int n) {
+		if (n==0) {
+			root = null;
+			min = null;
+			max = null;
+			return;
+		}
+		root = buildSorted(keys, values, 0, n);
+		root.parent = null;
+		min = selectNode(root, 0);
+		max = selectNode(root, n-1);
+	}
+
+	/**
+	  * replaces the content of the tree with the first n nodes of nodes, which are sorted by key and distinct.
+	  * The nodes themselves are kept, so whatever subclasses store in them survives; only their links,
+	  * ranks and sizes are set again
+	  */
+	private void relink(WAVLNode[] nodes, int n) {
+		if (n==0) {
+			root = null;
+			min = null;
+			max = null;
+			return;
+		}
+		root = linkSorted(nodes, 0, n);
+		root.parent = null;
+		min = nodes[0];
+		max = nodes[n-1];
+	}
+
+	/**
+	  * links nodes[from..to) into a perfectly balanced subtree, like buildSorted, and returns its root
+	  */
+	private static WAVLNode linkSorted(WAVLNode[] nodes, int from, int to) {
+		if (from>=to) {
+			return EXTERNAL;
+		}
+		int mid = (from+to)>>>1;
+		WAVLNode node = nodes[mid];
+		node.setLeft(linkSorted(nodes, from, mid));
+		node.setRight(linkSorted(nodes, mid+1, to));
+		node.rank = balancedRank(to-from);
+		return node;
+	}
+
+	/**
+	  * returns the nodes of the tree in ascending key order
+	  */
+	private WAVLNode[] nodesToArray() {
+		WAVLNode[] arr = new WAVLNode[size()];
+		WAVLNode curr = min;
+		for (int i=0; i<arr.length; i++) {
+			arr[i] = curr;
+			curr = findSuccessor(curr);
+		}
+		return arr;
+	}
+
+	/**
+	  * builds a perfectly balanced subtree of the items in keys[from..to) and returns its root.
+	  *every node's rank is its height, balancedRank of its subtree's size, so siblings' ranks differ by at most one
+	  *and all rank differences are 1 or 2
+	  */
+	private WAVLNode buildSorted(int[] keys, String[] values, int from, int to) {
+		if (from>=to) {
+			return EXTERNAL;
+		}
+		int mid = (from+to)>>>1;
+		WAVLNode node = createNode(keys[mid], values[mid]);
+		WAVLNode left = buildSorted(keys, values, from, mid);
+		WAVLNode right = buildSorted(keys, values, mid+1, to);
+		node.setLeft(left);
+		node.setRight(right);
+		node.rank = balancedRank(to-from);
+		return node;
+	}
+
+	/**
+	  * the height of a subtree of n items built by buildSorted, which halves the items at every level (-1 for none)
+	  */
+	private static int balancedRank(int n) {
+		return 31-Integer.numberOfLeadingZeros(n);
+	}
+
+	/**
+	  * buildSorted as a fork/join task, splitting ranges larger than SEQUENTIAL_SIZE
+	  */
+	@SuppressWarnings("serial")		//tasks are never serialized
+	private class BuildTask extends RecursiveTask<WAVLNode> {
+		private static final int SEQUENTIAL_SIZE = 1<<13;
+		private final int[] keys;
+		private final String[] values;
+		private final int from;
+		private final int to;
+
+		BuildTask(int[] keys, String[] values, int from, int to) {
+			this.keys = keys;
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected WAVLNode compute() {
+			if (to-from<=SEQUENTIAL_SIZE) {
+				return buildSorted(keys, values, from, to);
+			}
+			int mid = (from+to)>>>1;
+			BuildTask leftTask = new BuildTask(keys, values, from, mid);
+			leftTask.fork();
+			WAVLNode right = new BuildTask(keys, values, mid+1, to).compute();
+			WAVLNode left = leftTask.join();
+			WAVLNode node = createNode(keys[mid], values[mid]);
+			node.setLeft(left);
+			node.setRight(right);
+			node.rank = balancedRank(to-from);
+			return node;
+		}
 	}
-	
-	
- /**
-  * public boolean empty()
-  *
-  * returns true if and only if the tree is empty
-  *
-  */
- public boolean empty() { 
-	 return root==null;
- }
 
+	
 /**
   * public String search(int k)
   *
@@ -49,7 +227,7 @@ public class WAVLTree {
 		 return null;
 	 }
 	 
-	WAVLNode ret = searchWithNode(this.root ,k,0);
+	WAVLNode ret = searchWithNode(this.root ,k);
 	if (ret.getKey()==k) {
 		return ret.getValue();
 	}
@@ -59,33 +237,64 @@ public class WAVLTree {
  }
  
  /**
-  * a recursive search function. 
+  * public String update(int k, String i)
+  *
+  * replaces the info of the item with key k by i, without changing the tree's shape.
+  * returns the replaced info, or null if there is no item with key k (and then the tree is not changed)
+  */
+ public String update(int k, String i)
+ {
+	 if (empty()) {
+		 return null;
+	 }
+	 WAVLNode node = searchWithNode(this.root, k);
+	 if (node.getKey()!=k) {
+		 return null;
+	 }
+	 String old = node.getValue();
+	 node.value = i;
+	 refreshUpwards(node);		//summaries kept by subclasses may depend on the info
+	 return old;
+ }
+
+ /**
+  * an iterative search function, starting at node. 
   * If k is a key in the tree, returns the only node with key k
   * Otherwise returns the node that should be k's parent (i.e. returns potential insertion place)
   */
  
 
- public WAVLNode searchWithNode(WAVLNode node ,int k, int ChangeSize) 
+ public WAVLNode searchWithNode(WAVLNode node ,int k) 
  {
-	 				
-	node.subTreeSize+=ChangeSize;	//update sizes on the way down
-	 if (node.getKey()==k) { 		// k is already in the tree
-		 return node;
-	 }
-	 
-	 else if (node.getKey()<k) { 	//continue the search in right subtree 
-		 if (!node.getRight().isInnerNode()) {
+	 while (node.getKey()!=k) {
+		 WAVLNode next = node.getKey()<k ? node.getRight() : node.getLeft();	//continue in the right/left subtree
+		 if (!next.isInnerNode()) {
 			 return node;
 		 }
-		 return searchWithNode(node.getRight() , k, ChangeSize);
+		 node=next;
 	 }
-	 else if (node.getKey()>k) { 	//continue the search in left subtree 
-		if (!node.getLeft().isInnerNode()) {
-			return node;
-		}
-		return searchWithNode(node.getLeft() , k, ChangeSize);
-	}
-	 return null;
+	 return node;		// k is already in the tree
+ }
+ 
+ /**
+  * public WAVLNode searchWithNode(WAVLNode node, int k, int ChangeSize)
+  * searchWithNode(node, k), that also adds ChangeSize to the subtree size of every node on the search path.
+  * insert and delete no longer fix sizes on the way down, so nothing here calls it
+  * @deprecated use searchWithNode(node, k)
+  */
+ @Deprecated
+ public WAVLNode searchWithNode(WAVLNode node ,int k, int ChangeSize) 
+ {
+	 WAVLNode found = searchWithNode(node, k);
+	 if (ChangeSize!=0) {
+		 for (WAVLNode curr=found; ; curr=curr.getParent()) {
+			 curr.size+=ChangeSize;
+			 if (curr==node) {
+				 break;
+			 }
+		 }
+	 }
+	 return found;
  }
  
 
@@ -100,36 +309,170 @@ public class WAVLTree {
   public int insert(int k, String i) {
 	  
 	  if (this.getRoot()==null) {			//insert to an empty tree
-		  this.root = new WAVLNode(k, i);
+		  this.root = newNode(k, i);
 		  min=root;
 		  max=root;
-		  root.subTreeSize=1;
+		  root.updateSize();
 		  return 0;
 	  }
-	  WAVLNode node = this.searchWithNode(this.getRoot(), k ,0);	//find insertion place
+	  WAVLNode node = this.searchWithNode(this.getRoot(), k);	//find insertion place
 	  
 	  if (node.getKey()==k) {				//key already in tree
      	 return -1;
       }
 	  
-	  else if (k>node.getKey()) {			//insert as right child
-		  
-    	  node.setRight(new WAVLNode(k, i));
-    	  this.searchWithNode(this.getRoot(), k ,1);	//increase preseccessor's sizes
+	  WAVLNode added = attachLeaf(node, k, i);
+	  int count = insertRebalance(node, 1);		//start rebalancing with the parent of the new node, whose ancestors gain an item
+	  refreshUpwards(added);
+	  return count;
+         
+  }
+  
+  /**
+   * hangs a new node with key k and info i below node, the place a search for k ended at,
+   * and updates node's size, min and max. Returns the new node
+   */
+  private WAVLNode attachLeaf(WAVLNode node, int k, String i) {
+	  WAVLNode newNode = newNode(k, i);
+	  newNode.updateSize();
+	  if (k>node.getKey()) {				//insert as right child
+    	  node.setRight(newNode);
     	  if(k>max.getKey()) {
-    		  max=node.getRight();
+    		  max=newNode;
     	  }
       }
-	  else if (k<node.getKey()) {			//insert as left child
-    	  node.setLeft(new WAVLNode(k, i));
-    	  this.searchWithNode(this.getRoot(), k ,1); //increase preseccessors's sizes
+	  else {								//insert as left child
+    	  node.setLeft(newNode);
     	  if(k<min.getKey()) {
-    		  min=node.getLeft(); 
+    		  min=newNode; 
     	  }
       }
-	  
-	  return insertRebalance(node);			//start rebalancing with the node that is the parent of the new node
-         
+	  return newNode;
+  }
+  
+  /**
+   * public int insertAll(int[] keys, String[] values)
+   *
+   * inserts the items (keys[j], values[j]) to the tree. Keys that are already in the tree,
+   * or appear earlier in the batch, are skipped like insert would skip them.
+   * A batch that is large compared to the tree is merged with the tree's nodes and the tree is rebuilt from them;
+   * otherwise the batch is sorted and each key is inserted starting from the previous insertion point.
+   * returns the total number of rebalancing operations (a rebuild needs none)
+   */
+  public int insertAll(int[] keys, String[] values) {
+	  if (keys.length!=values.length) {
+		  throw new IllegalArgumentException("got "+keys.length+" keys but "+values.length+" values");
+	  }
+	  if (keys.length==0) {
+		  return 0;
+	  }
+	  long[] order = sortedOrder(keys);
+	  if (rebuildIsCheaper(keys.length)) {
+		  WAVLNode[] treeNodes = nodesToArray();
+		  WAVLNode[] merged = new WAVLNode[treeNodes.length+keys.length];
+		  int t=0, b=0, n=0;
+		  while (t<treeNodes.length||b<order.length) {
+			  int j = (int) order[Math.min(b, order.length-1)];
+			  if (b==order.length||(t<treeNodes.length&&treeNodes[t].getKey()<=keys[j])) {
+				  if (b<order.length&&treeNodes[t].getKey()==keys[j]) {		//the tree's item wins
+					  b++;
+				  }
+				  merged[n++]=treeNodes[t++];
+			  }
+			  else {
+				  if (n==0||merged[n-1].getKey()!=keys[j]) {			//the batch's first occurrence wins
+					  merged[n++]=newNode(keys[j], values[j]);
+				  }
+				  b++;
+			  }
+		  }
+		  relink(merged, n);
+		  return 0;
+	  }
+	  int count=0;
+	  WAVLNode finger=null;
+	  for (long packed : order) {
+		  int j = (int) packed;
+		  int k = keys[j];
+		  if (finger==null) {						//the first key is inserted from the root
+			  count+=Math.max(insert(k, values[j]), 0);
+			  finger=searchWithNode(root, k);
+			  continue;
+		  }
+		  WAVLNode start=finger;			//climb until k belongs to start's subtree
+		  while (start.parent!=null&&!(start.parent.getLeft()==start&&start.parent.getKey()>k)) {
+			  start=start.parent;
+		  }
+		  WAVLNode node = searchWithNode(start, k);
+		  if (node.getKey()==k) {
+			  continue;
+		  }
+		  finger=attachLeaf(node, k, values[j]);
+		  count+=insertRebalance(node, 1);
+		  refreshUpwards(finger);
+	  }
+	  return count;
+  }
+  
+  /**
+   * public int deleteAll(int[] keys)
+   *
+   * deletes the items with the given keys from the tree. Keys that are not in the tree are skipped.
+   * A batch that is large compared to the tree relinks the remaining nodes into a new tree;
+   * otherwise the keys are deleted one by one in sorted order.
+   * returns the total number of rebalancing operations (a rebuild needs none)
+   */
+  public int deleteAll(int[] keys) {
+	  int[] sorted = keys.clone();
+	  Arrays.sort(sorted);
+	  if (rebuildIsCheaper(keys.length)) {
+		  WAVLNode[] treeNodes = nodesToArray();
+		  int b=0, n=0;
+		  for (int t=0; t<treeNodes.length; t++) {
+			  int k = treeNodes[t].getKey();
+			  while (b<sorted.length&&sorted[b]<k) {
+				  b++;
+			  }
+			  if (b==sorted.length||sorted[b]!=k) {		//keep the node
+				  treeNodes[n++]=treeNodes[t];
+			  }
+			  else {
+				  recycle(treeNodes[t]);
+			  }
+		  }
+		  relink(treeNodes, n);
+		  return 0;
+	  }
+	  int count=0;
+	  for (int k : sorted) {
+		  int res = delete(k);
+		  if (res>0) {
+			  count+=res;
+		  }
+	  }
+	  return count;
+  }
+  
+  /**
+   * returns true if rebuilding the tree, O(size + batch), is expected to be cheaper
+   * than batch separate operations, O(batch * log(size))
+   */
+  private boolean rebuildIsCheaper(int batch) {
+	  long n = size();
+	  int log = 64-Long.numberOfLeadingZeros(n+1);
+	  return (long) batch*log >= n+batch;
+  }
+  
+  /**
+   * returns the indexes of keys sorted by key (ties by index), each packed in the low bits of its key
+   */
+  private static long[] sortedOrder(int[] keys) {
+	  long[] order = new long[keys.length];
+	  for (int j=0; j<keys.length; j++) {
+		  order[j] = ((long) keys[j]<<32)|j;
+	  }
+	  Arrays.sort(order);
+	  return order;
   }
   
   /**
@@ -149,7 +492,7 @@ public class WAVLTree {
    */ 
   
   public static boolean nodeType(WAVLNode node, int expectedLeftDiff, int expectedRightDiff) {
-	  if(node.rank-node.left.rank==expectedLeftDiff&&node.rank-node.right.rank==expectedRightDiff) {
+	  if(node.leftDiff()==expectedLeftDiff&&node.rightDiff()==expectedRightDiff) {
 		  return true;
 	  }
 	  return false;
@@ -199,65 +542,19 @@ public class WAVLTree {
   
   /**
    * public void rotateRight(WAVLNode node)
-   *rotates the tree starting at node right
+   *rotates the tree starting at node right.
+   *Only links and sizes change: the caller sets the ranks of the nodes that moved
    */ 
   public void rotateRight(WAVLNode node) {
-	  
-	  node.rank--;
-	  if(root==node) {					
-		  root=root.getLeft();
-		  root.parent=null;
-		  WAVLNode temp=root.getRight();
-		  root.setRight(node);
-		  node.setLeft(temp);
-		  temp.updateSize();
-		  node.updateSize();
-		  root.updateSize();
-	  }
-	  else {
-		  node.setParentChild(node.getLeft());
-		  WAVLNode temp=node.left.right;
-		  node.left.setRight(node);
-		  node.setLeft(temp);
-		  temp.updateSize();
-		  node.updateSize();
-		  node.getParent().updateSize();
-		  if(node.getParent().getParent()!=null) {
-			  node.getParent().getParent().updateSize();
-		  }
-		  
-	  }
+	  super.rotateRight(node);
   }
   /**
    * public void rotateLeft(WAVLNode node)
-   *rotates the tree starting at node left
+   *rotates the tree starting at node left.
+   *Only links and sizes change: the caller sets the ranks of the nodes that moved
    */ 
   public void rotateLeft(WAVLNode node) {
-	  
-	  node.rank--;
-	  if(root==node) {					
-		  root=root.getRight();
-		  root.parent=null;
-		  WAVLNode temp=root.getLeft();
-		  root.setLeft(node);
-		  node.setRight(temp);
-		  temp.updateSize();
-		  node.updateSize();
-		  root.updateSize();
-	  }
-	  else {
-		  node.setParentChild(node.getRight());
-		  WAVLNode temp=node.right.left;
-		  node.right.setLeft(node);
-		  node.setRight(temp);
-		  temp.updateSize();
-		  node.updateSize();
-		  node.getParent().updateSize();
-		  if(node.getParent().getParent()!=null) {
-			  node.getParent().getParent().updateSize();
-		  }		  
-	  }
-	  	 
+	  super.rotateLeft(node);
   }
   /**
    *  public void doubleRotateRight(WAVLNode node)
@@ -265,7 +562,6 @@ public class WAVLTree {
    */ 
   
   public void doubleRotateRight(WAVLNode node) {
-	  node.left.right.rank++;	//promote
 	  this.rotateLeft(node.left);
 	  this.rotateRight(node);
 	  
@@ -276,7 +572,6 @@ public class WAVLTree {
    *double rotates the tree starting at node left
    */ 
   public void doubleRotateLeft(WAVLNode node) {
-	  node.right.left.rank++;	//promote
 	  rotateRight(node.right);
 	  rotateLeft(node);
   }
@@ -284,44 +579,13 @@ public class WAVLTree {
   
   /**
    *  public int insertRebalance(WAVLNode node)
-   *rebalances the tree after insertion of a new node
+   *rebalances the tree after insertion of a new node, climbing from node towards the root.
+   *The loop is AbstractWAVLTree's, shared with the other trees of this package
    *returns the number of rebalancing operations needed
    */ 
   
   public int insertRebalance(WAVLNode node) {
-	  if (isLegal(node)) {							//rebalancing is done
-		  return 0;
-	  }
-	  if (is01(node)||is10(node)){					//case 1 (promote)
-		  node.rank++;
-		  if (this.root==node) {
-			  return 1;
-		  }
-		  else {
-			  return 1 + insertRebalance(node.parent);
-		  }
-	  }
-	  
-	  if(is02(node)&&is12(node.getLeft())) {		//case 2
-		  rotateRight(node);
-		  return 2;
-	  }
-	  
-	  if(is20(node)&&is21(node.getRight())) {		//case 2
-		  rotateLeft(node);
-		  return 2;
-	  }
-	  
-	  if(is02(node)&&is21(node.getLeft())) {		//case 3
-		  doubleRotateRight(node);
-		  return 5;
-	  }
-	  
-	  if(is20(node)&&is12(node.getRight())) {		//case 3
-		  doubleRotateLeft(node);
-		  return 5;
-	  }
-	  return 0;
+	  return super.insertRebalance(node);
   }
  
   /**
@@ -338,41 +602,101 @@ public class WAVLTree {
 		  return -1;
 	  }
 
-	  WAVLNode deletedNode=searchWithNode(root,k,0);// find the node to be deleted 
+	  WAVLNode deletedNode=searchWithNode(root,k);// find the node to be deleted 
 	  if (deletedNode.getKey()!=k) {				//key is not in the tree
      	 return -1;
       }
 	  
 
+	  boolean hasTwoChildren=!isLeaf(deletedNode)&&!isUnary(deletedNode);
+	  WAVLNode removed=hasTwoChildren ? findSuccessor(deletedNode) : deletedNode;	//the node that leaves its position in the tree
+
+	  int count;
 	  if(deletedNode==root) {
-		  if(!isLeaf(deletedNode)&&!isUnary(deletedNode)){
-			  searchWithNode(root,findSuccessor(deletedNode).getKey(),-1);					//decrease sizes of deletedNode's predecessors
-		  }
-		return deleteRoot(deletedNode);
-		   
+		  count=deleteRoot(deletedNode);
 	  }
-	  
-	  if(isLeaf(deletedNode)) {	
-		  searchWithNode(root,k,-1);														//decrease sizes of deletedNode's predecessors
-		  return deleteLeaf(deletedNode);
+	  else if(isLeaf(deletedNode)) {	
+		  count=deleteLeaf(deletedNode);
 	  }
-	  
-	  if(isUnary(deletedNode)) {	
-		  searchWithNode(root,k,-1);														//decrease sizes of deletedNode's predecessors
-		  return deleteUnary(deletedNode);
+	  else if(isUnary(deletedNode)) {	
+		  count=deleteUnary(deletedNode);
 	  }
-	  
 	  else {										//deletedNode has 2 children
-		 WAVLNode succ=findSuccessor(deletedNode); 
-		 searchWithNode(root,succ.getKey(),-1);
-		 deletedNode.replace(succ);
+		 deletedNode.replace(removed);				//deletedNode moves to removed's position, which has at most one child
 		 if(isUnary(deletedNode)) {
-			 return deleteUnary(deletedNode);
+			 count=deleteUnary(deletedNode);
 		 }
 		 else {
-			 return deleteLeaf(deletedNode);
+			 count=deleteLeaf(deletedNode);
 		 }
-	  }  
+	  }
+	  recycle(deletedNode);
+	  return count;
+  }
+  
+  /**
+   * returns a node for the item (k, i), taken from the pool if it has one
+   */
+  private WAVLNode newNode(int k, String i) {
+	  if(pool==null) {
+		  return createNode(k, i);
+	  }
+	  WAVLNode node=pool;
+	  pool=node.parent;
+	  pooled--;
+	  node.parent=null;
+	  node.left=EXTERNAL;
+	  node.right=EXTERNAL;
+	  node.rank=0;
+	  node.size=0;
+	  node.key=k;
+	  node.value=i;
+	  return node;
+  }
+  
+  /**
+   * returns a new node for the item (k, i). Trees that keep more than sizes in their nodes return a subclass of WAVLNode
+   */
+  WAVLNode createNode(int k, String i) {
+	  return new WAVLNode(k, i);
+  }
+  
+  /**
+   * returns a new empty tree whose nodes are like this tree's, for the results of join, split and the set operations
+   */
+  WAVLTree emptyTree() {
+	  return new WAVLTree();
+  }
+  
+  /**
+   * called after an insertion or deletion with the lowest node whose subtree changed.
+   * The sizes are already right; trees whose nodes keep more than sizes recompute it on the path up to the root
+   */
+  void refreshUpwards(WAVLNode node) {
+  }
+  
+  /**
+   * returns true iff the nodes of other can be mixed with this tree's in join and the set operations:
+   * both trees must be of the same class, and subclasses check that they keep the same extra data
+   */
+  boolean sameNodes(WAVLTree other) {
+	  return other.getClass()==getClass();
+  }
+  
+  /**
+   * keeps node, which has just left the tree, for newNode if the pool has room.
+   * Its links and info are cleared, so it looks like an external node until it is reused
+   */
+  private void recycle(WAVLNode node) {
+	  if(pooled>=poolCapacity) {
+		  return;
+	  }
+	  node.left=null;
+	  node.right=null;
+	  node.value=null;
+	  node.parent=pool;
+	  pool=node;
+	  pooled++;
   }
   
   
@@ -381,7 +705,7 @@ public class WAVLTree {
    * Returns true iff node has exactly one child
    */
   public boolean isUnary(WAVLNode node) {
-	  if ((node.getLeft()==external&&node.getRight()!=external)||(node.getRight()==external&&node.getLeft()!=external)) {
+	  if (node.getLeft().isInnerNode()!=node.getRight().isInnerNode()) {
 		  return true;
 	  }
 	  return false;
@@ -393,7 +717,7 @@ public class WAVLTree {
    * Returns true iff node has no children
    */
   public boolean isLeaf(WAVLNode node) {
-	  if ((node.getLeft()==external&&node.getRight()==external)) {
+	  if (!node.getLeft().isInnerNode()&&!node.getRight().isInnerNode()) {
 		  return true;
 	  }
 	  return false;
@@ -410,9 +734,9 @@ public class WAVLTree {
 		  return null;
 	  }
 	
-	  if (node.getRight()!=external) {	//node has a right sub-tree
+	  if (node.getRight().isInnerNode()) {	//node has a right sub-tree
 		  WAVLNode succ=node.getRight();
-		  while(succ.getLeft()!=external) {
+		  while(succ.getLeft().isInnerNode()) {
 			  succ=succ.getLeft();
 		  }
 		  return succ;
@@ -425,6 +749,33 @@ public class WAVLTree {
 		  return succ.parent;
 	  }
   }
+  
+  /**
+   * public WAVLNode findPredecessor(WAVLNode node)
+   * Returns the node preceding the argument node is the tree
+   * if there is no predecessor, returns null
+   */
+  public WAVLNode findPredecessor(WAVLNode node) {
+	  
+	  if(node==min) {
+		  return null;
+	  }
+	
+	  if (node.getLeft().isInnerNode()) {	//node has a left sub-tree
+		  WAVLNode pred=node.getLeft();
+		  while(pred.getRight().isInnerNode()) {
+			  pred=pred.getRight();
+		  }
+		  return pred;
+	  }
+	  else {							//node does not have a left sub-tree
+		  WAVLNode pred=node;
+		  while(pred.parent.getLeft()==pred) {
+			  pred=pred.parent;
+		  }
+		  return pred.parent;
+	  }
+  }
     
   
   /**
@@ -438,34 +789,12 @@ public class WAVLTree {
 	  if (max==node) {
 		  max=node.getLeft();
 	  }
-	  if(is11(node.parent)&&is12(node)) {		//leftmost case in presentation
-		  node.setParentChild(node.getLeft());
-	  }
-	  else if(is11(node.parent)&&is21(node)) {	//leftmost case in presentation
-		  node.setParentChild(node.getRight());
-	  }
-	  else if(is12(node)&&is12(node.parent)) {	//middle case in presentation
-		  node.setParentChild(node.getLeft());
-	  }
-	  else if(is21(node)&&is21(node.parent)) {	//middle case in presentation
-		  node.setParentChild(node.getRight());
-	  }
-	  else if(is12(node)&&(is21(node.parent))) {	//rightmost case in presentation
-		  node.setParentChild(node.getLeft());
-		  
-	  }
-	  else if(is21(node)&&is12(node.parent)) {		//rightmost case in presentation
-		  node.setParentChild(node.getRight());		
-	  }
-	  else if(is22(node.parent)) {					//rightmost case in presentation
-		  if(is12(node)) {
-			  node.setParentChild(node.getLeft());
-		  }
-		  else if(is21(node)) {
-			  node.setParentChild(node.getRight());
-		  }
-	  }
-	  return deleteRebalance(node.getParent());
+	  WAVLNode child=node.getLeft().isInnerNode() ? node.getLeft() : node.getRight();
+	  WAVLNode parent=node.getParent();
+	  node.setParentChild(child);
+	  int count=deleteRebalance(parent, -1);		//parent's size was set by setParentChild, its ancestors lose an item
+	  refreshUpwards(parent);
+	  return count;
   }
   
   
@@ -481,17 +810,15 @@ public class WAVLTree {
 		  max=null;
 		  return 0;
 	  }
-	  else if (node.getRight()==external) { //root is max
+	  else if (!node.getRight().isInnerNode()) { //root is max
 		  this.root=node.getLeft();
 		  node.getLeft().parent=null;
-		  node.getLeft().rank=0;
 		  max=root;
 		  return 0;
 	  }
-	  else if (node.getLeft()==external) { //root is min
+	  else if (!node.getLeft().isInnerNode()) { //root is min
 		  this.root=node.getRight();
 		  node.getRight().parent=null;
-		  node.getRight().rank=0;
 		  min=root;
 		  return 0;
 	  }
@@ -522,149 +849,50 @@ public class WAVLTree {
 	  if (node==min) {
 		  min=findSuccessor(node);
 	  }
-	  node.setParentChild(external);
-	  return deleteRebalance(daddy);
+	  node.setParentChild(EXTERNAL);
+	  int count=deleteRebalance(daddy, -1);
+	  refreshUpwards(daddy);
+	  return count;
   }
   
   
   
   /**
    *  public int delteRebalance(WAVLNode node)
-   *rebalances the tree after a deletion of a node
+   *rebalances the tree after a deletion of a node, climbing from node towards the root.
+   *The loop is AbstractWAVLTree's, shared with the other trees of this package
    *returns the number of rebalancing operations needed
    */ 
   public int deleteRebalance(WAVLNode node) {
-	  if(isLegal(node)) {
-		  if(isLeaf(node)&&node.getRank()==1) {
-			  node.rank--;
-			  if(node.getParent()!=null) {
-				  return 1+deleteRebalance(node.getParent());
-			  }
-			  else {
-				  return 1;
-				  }
-		  }
-		  else if(isLeaf(node)&&node.getRank()==2) {
-			  node.rank-=2;
-			  if(node.getParent()!=null) {
-				  return 1+deleteRebalance(node.getParent());
-			  }
-			  else {
-				  return 1;
-			  }
-		  }
-		  return 0;		//node is a leaf with rank 0
-	  }
-	  
-	  else if(is32(node)||is23(node)) {		//case 1 (demote)
-		  node.rank--;
-		  if(node==root) {
-			  return 1;
-		  }
-		  return 1+deleteRebalance(node.parent);
-	  }
-	  else if(is31(node)&&is22(node.getRight())) {	//case 2 (double demote)
-		  node.rank--;
-		  node.getRight().rank--;
-		  if(node==root) {
-			 return 2; 
-		  }
-		  return 2+deleteRebalance(node.parent);
-	  }
-	  else if(is13(node)&&is22(node.getLeft())) {	//case 2 (double demote)
-		  node.rank--;
-		  node.getLeft().rank--;
-		  if(node==root) {
-			 return 2; 
-		  }
-		  return 2+deleteRebalance(node.parent);
-	  }
-	  else if(is31(node)&&(is11(node.getRight())||is21(node.getRight()))){//case 3 (rotate)
-		  node.getRight().rank++;
-		  rotateLeft(node);
-		  if(isLeaf(node)&&is22(node)){
-			node.rank--;  
-		  }
-		  return 3;
-	  }
-	  else if(is13(node)&&(is11(node.getLeft())||is12(node.getLeft()))){//case 3 (rotate)
-		  node.getLeft().rank++;
-		  rotateRight(node);
-		  if(isLeaf(node)&&is22(node)){
-				node.rank--;  
-			  }
-		  return 3;
-	  }
-	  else if(is31(node)&&is12(node.getRight())) {		//case 4 (double rotate)
-		  node.getRight().getLeft().rank++;
-		  node.rank--;
-		  doubleRotateLeft(node);
-		  return 6;
-	  }
-	  else if(is13(node)&&is21(node.getLeft())) {		//case 4 (double rotate)
-		  node.getLeft().getRight().rank++;
-		  node.rank--;
-		  doubleRotateRight(node);
-		  return 6;
-	  }
-	  return 0;
+	  return super.deleteRebalance(node);
   }
   
   /**
-   * public String min()
+   * public String getMin()
    *
-   * Returns the info of the item with the smallest key in the tree,
+   * Returns the node with the smallest key in the tree,
    * or null if the tree is empty
    */
-  public String min()
-  {
+  public WAVLNode getMin() {
 	  if(empty()) {
 		  return null;
 	  }
-      return min.getValue();
+	  return min;
   }
-
+  
   /**
-   * public String max()
+   * public String getMax()
    *
-   * Returns the info of the item with the largest key in the tree,
+   * Returns the node with the largest key in the tree,
    * or null if the tree is empty
    */
-  public String max()
-  {
+  public WAVLNode getMax() {
 	  if(empty()) {
 		  return null;
 	  }
-      return max.getValue();
+	  return max;
   }
-  
-  
-  /**
-   * public String getMin()
-   *
-   * Returns the node with the smallest key in the tree,
-   * or null if the tree is empty
-   */
-  public WAVLNode getMin() {
-	  if(empty()) {
-		  return null;
-	  }
-	  return min;
-  }
-  
-  /**
-   * public String getMax()
-   *
-   * Returns the node with the largest key in the tree,
-   * or null if the tree is empty
-   */
-  public WAVLNode getMax() {
-	  if(empty()) {
-		  return null;
-	  }
-	  return max;
-  }
-
+
   /**
   * public int[] keysToArray()
   *
@@ -701,89 +929,835 @@ public class WAVLTree {
   }
 
   /**
-   * public int size()
-   * Returns the number of nodes in the tree.
+   * public void forEach(IntObjConsumer<String> action)
+   *
+   * Calls action with the key and info of every item, in ascending key order, without allocating.
+   * The tree must not be changed by action
    */
-  public int size()
-  {
+  public void forEach(IntObjConsumer<String> action) {
 	  if(empty()) {
-		  return 0;
+		  return;
+	  }
+	  for(WAVLNode curr=min; curr!=null; curr=findSuccessor(curr)) {
+		  action.accept(curr.getKey(), curr.getValue());
 	  }
-      return root.subTreeSize;
   }
   
-    /**
-   * public WAVLNode getRoot()
-   * Returns the root WAVL node, or null if the tree is empty
+  /**
+   * public void parallelForEach(IntObjConsumer<String> action)
    *
+   * Calls action with the key and info of every item, from tasks of the common ForkJoinPool.
+   * Large subtrees are split at their roots, so every task gets an even share of the items.
+   * The calls come in no particular order and from several threads; the tree must not be changed meanwhile
    */
-  public WAVLNode getRoot()
-  {
-          return this.root;
+  public void parallelForEach(IntObjConsumer<String> action) {
+	  if(empty()) {
+		  return;
+	  }
+	  ForkJoinPool.commonPool().invoke(new ForEachTask(root, action));
   }
-
-
   
   /**
- * public int select(int i)
- *
- * Returns the value of the i'th smallest key (return -1 if tree is empty)
- * Example 1: select(1) returns the value of the node with minimal key 
-     * Example 2: select(size()) returns the value of the node with maximal key 
-     * Example 3: select(2) returns the value 2nd smallest minimal node, i.e the value of the node minimal node's successor  
- *
- */ 
-  public String select(int i)
-  {
-	  	if(i>size()||i<=0) {
-			return null;
-		}	
-		return selectRec(root,i-1).getValue();	  
-  }  
+   * visits the subtree of node, forking a task for its left subtree while it is larger than SEQUENTIAL_SIZE
+   */
+  @SuppressWarnings("serial")		//tasks are never serialized
+  private class ForEachTask extends RecursiveAction {
+	  private static final int SEQUENTIAL_SIZE = 1<<12;
+	  private final WAVLNode node;
+	  private final IntObjConsumer<String> action;
+	  
+	  ForEachTask(WAVLNode node, IntObjConsumer<String> action) {
+		  this.node=node;
+		  this.action=action;
+	  }
+	  
+	  @Override
+	  protected void compute() {
+		  WAVLNode curr=node;
+		  ForEachTask[] forked=new ForEachTask[2*Integer.SIZE];	//one per level, more than the height of any WAVL tree
+		  int count=0;
+		  while(curr.getSubtreeSize()>SEQUENTIAL_SIZE) {
+			  forked[count]=new ForEachTask(curr.getLeft(), action);
+			  forked[count++].fork();
+			  action.accept(curr.getKey(), curr.getValue());
+			  curr=curr.getRight();
+		  }
+		  if(curr.isInnerNode()) {
+			  WAVLNode item=selectNode(curr, 0);
+			  for(int i=curr.getSubtreeSize(); i>1; i--) {
+				  action.accept(item.getKey(), item.getValue());
+				  item=findSuccessor(item);
+			  }
+			  action.accept(item.getKey(), item.getValue());
+		  }
+		  while(count>0) {
+			  forked[--count].join();
+		  }
+	  }
+  }
   
   /**
- * public int selectRec(WAVLNode curr, int i)
- * Returns the node with the i'th smallest key   
- *
- */   
+   * public WAVLCursor cursor()
+   *
+   * Returns a new cursor over the tree, not yet positioned
+   */
+  public WAVLCursor cursor() {
+	  return new WAVLCursor(this);
+  }
+
+  /**
+   * public FrozenWAVLTree freeze()
+   *
+   * Returns a read-only copy of the items, laid out in arrays for fast searches (see FrozenWAVLTree).
+   * Takes O(n) time; later changes to this tree do not affect the copy
+   */
+  public FrozenWAVLTree freeze() {
+	  FrozenWAVLTree frozen = new FrozenWAVLTree(size());
+	  forEach(frozen::append);
+	  return frozen;
+  }
+
+  /**
+ * public WAVLNode selectRec(WAVLNode curr, int i)
+ * Returns the node with the i'th smallest key (counting from 0) in the subtree of curr
+ * @deprecated selection is iterative now; use selectNode(curr, i)
+ */
+  @Deprecated
   public WAVLNode selectRec(WAVLNode curr, int i) {
-	int r=curr.getLeft().getSubtreeSize();
-	if(r>i) {
-		return selectRec(curr.getLeft(),i); 
-	}
-	else if(r<i) {
-		return selectRec(curr.getRight(),i-r-1);
-	}
-	return curr;
+	return selectNode(curr, i);
 }
+  
+  /**
+   * public int rank(int k)
+   *
+   * Returns the number of keys in the tree that are smaller than or equal to k.
+   * If k is in the tree, select(rank(k)) returns its info
+   */
+  public int rank(int k) {
+	  return countBelow(k, true);
+  }
+  
+  /**
+   * public int countRange(int lo, int hi)
+   *
+   * Returns the number of keys k in the tree with lo <= k <= hi
+   */
+  public int countRange(int lo, int hi) {
+	  if(lo>hi) {
+		  return 0;
+	  }
+	  return countBelow(hi, true)-countBelow(lo, false);
+  }
+  
+  /**
+   * Returns the number of keys smaller than k (or equal to k, if inclusive), in one descent using subtree sizes
+   */
+  private int countBelow(int k, boolean inclusive) {
+	  int count=0;
+	  WAVLNode node=root;
+	  while(node!=null&&node.isInnerNode()) {
+		  if(node.getKey()<k||(inclusive&&node.getKey()==k)) {
+			  count+=node.getLeft().getSubtreeSize()+1;
+			  if(node.getKey()==k) {
+				  break;
+			  }
+			  node=node.getRight();
+		  }
+		  else {
+			  node=node.getLeft();
+		  }
+	  }
+	  return count;
+  }
+  
+  /**
+   * public Iterator<WAVLNode> range(int lo, int hi)
+   *
+   * Returns an iterator over the nodes with lo <= key <= hi, in ascending key order.
+   * It starts at the smallest key that is at least lo and walks with findSuccessor.
+   * The tree must not be changed while the iterator is used
+   */
+  public Iterator<WAVLNode> range(int lo, int hi) {
+	  WAVLNode first = lo>hi ? null : ceilingNode(lo);
+	  return new Iterator<WAVLNode>() {
+		  private WAVLNode next = first!=null&&first.getKey()<=hi ? first : null;
+		  
+		  public boolean hasNext() {
+			  return next!=null;
+		  }
+		  
+		  public WAVLNode next() {
+			  if(next==null) {
+				  throw new NoSuchElementException();
+			  }
+			  WAVLNode curr=next;
+			  next=findSuccessor(curr);
+			  if(next!=null&&next.getKey()>hi) {
+				  next=null;
+			  }
+			  return curr;
+		  }
+	  };
+  }
+  
+  /**
+   * public Iterator<WAVLNode> iterator()
+   *
+   * Returns an iterator over all nodes, in ascending key order.
+   * The tree must not be changed while the iterator is used
+   */
+  @Override
+  public Iterator<WAVLNode> iterator() {
+	  return range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+  
+  /**
+   * public Spliterator<WAVLNode> spliterator()
+   *
+   * Returns a spliterator over all nodes, in ascending key order. See keySpliterator()
+   */
+  @Override
+  public Spliterator<WAVLNode> spliterator() {
+	  return new NodeSpliterator(min, 0, size());
+  }
+  
+  /**
+   * public Spliterator.OfInt keySpliterator()
+   *
+   * Returns a spliterator over the keys, in ascending order, for StreamSupport.intStream.
+   * Spliterators cover ranges of positions, and split them in the middle, whose node select finds
+   * in O(log n) time, so every part knows its exact size (SIZED and SUBSIZED) and parallel streams
+   * get even shares. The tree must not be changed while the spliterator is used
+   */
+  public Spliterator.OfInt keySpliterator() {
+	  return new KeySpliterator(min, 0, size());
+  }
+  
+  /**
+   * the positions index..fence-1 of the tree in key order; next is the node at position index
+   */
+  private abstract class InOrderSpliterator {
+	  protected WAVLNode next;
+	  protected int index;
+	  protected final int fence;
+	  
+	  InOrderSpliterator(WAVLNode next, int index, int fence) {
+		  this.next=next;
+		  this.index=index;
+		  this.fence=fence;
+	  }
+	  
+	  /**
+	   * moves this spliterator to the second half of its positions and returns the first of them,
+	   * or -1 if there are too few positions to split
+	   */
+	  protected int splitMiddle() {
+		  int mid=(index+fence)>>>1;
+		  if(mid==index) {
+			  return -1;
+		  }
+		  next=selectNode(root, mid);
+		  index=mid;
+		  return mid;
+	  }
+	  
+	  /**
+	   * returns the node at position index and moves to the next position. Requires index < fence
+	   */
+	  protected WAVLNode advance() {
+		  WAVLNode curr=next;
+		  index++;
+		  next=index<fence ? findSuccessor(curr) : null;
+		  return curr;
+	  }
+	  
+	  public long estimateSize() {
+		  return fence-index;
+	  }
+	  
+	  public int characteristics() {
+		  return Spliterator.ORDERED|Spliterator.SORTED|Spliterator.SIZED|Spliterator.SUBSIZED
+				  |Spliterator.DISTINCT|Spliterator.NONNULL;
+	  }
+  }
+  
+  private class KeySpliterator extends InOrderSpliterator implements Spliterator.OfInt {
+	  KeySpliterator(WAVLNode next, int index, int fence) {
+		  super(next, index, fence);
+	  }
+	  
+	  @Override
+	  public Spliterator.OfInt trySplit() {
+		  WAVLNode first=next;
+		  int from=index;
+		  int mid=splitMiddle();
+		  return mid<0 ? null : new KeySpliterator(first, from, mid);
+	  }
+	  
+	  @Override
+	  public boolean tryAdvance(IntConsumer action) {
+		  if(index>=fence) {
+			  return false;
+		  }
+		  action.accept(advance().getKey());
+		  return true;
+	  }
+	  
+	  @Override
+	  public void forEachRemaining(IntConsumer action) {
+		  while(index<fence) {
+			  action.accept(advance().getKey());
+		  }
+	  }
+	  
+	  @Override
+	  public Comparator<? super Integer> getComparator() {
+		  return null;							//natural order
+	  }
+  }
+  
+  private class NodeSpliterator extends InOrderSpliterator implements Spliterator<WAVLNode> {
+	  NodeSpliterator(WAVLNode next, int index, int fence) {
+		  super(next, index, fence);
+	  }
+	  
+	  @Override
+	  public Spliterator<WAVLNode> trySplit() {
+		  WAVLNode first=next;
+		  int from=index;
+		  int mid=splitMiddle();
+		  return mid<0 ? null : new NodeSpliterator(first, from, mid);
+	  }
+	  
+	  @Override
+	  public boolean tryAdvance(Consumer<? super WAVLNode> action) {
+		  if(index>=fence) {
+			  return false;
+		  }
+		  action.accept(advance());
+		  return true;
+	  }
+	  
+	  @Override
+	  public void forEachRemaining(Consumer<? super WAVLNode> action) {
+		  while(index<fence) {
+			  action.accept(advance());
+		  }
+	  }
+	  
+	  @Override
+	  public Comparator<? super WAVLNode> getComparator() {
+		  return Comparator.comparingInt(WAVLNode::getKey);
+	  }
+  }
+  
+  /**
+   * public WAVLNode floorNode(int k)
+   * Returns the node with the largest key that is smaller than or equal to k, or null if there is none
+   */
+  public WAVLNode floorNode(int k) {
+	  return boundNode(k, true, true);
+  }
+  
+  /**
+   * public WAVLNode ceilingNode(int k)
+   * Returns the node with the smallest key that is larger than or equal to k, or null if there is none
+   */
+  public WAVLNode ceilingNode(int k) {
+	  return boundNode(k, false, true);
+  }
+  
+  /**
+   * public WAVLNode lowerNode(int k)
+   * Returns the node with the largest key that is strictly smaller than k, or null if there is none
+   */
+  public WAVLNode lowerNode(int k) {
+	  return boundNode(k, true, false);
+  }
+  
+  /**
+   * public WAVLNode higherNode(int k)
+   * Returns the node with the smallest key that is strictly larger than k, or null if there is none
+   */
+  public WAVLNode higherNode(int k) {
+	  return boundNode(k, false, false);
+  }
+  
+  /**
+   * searches for k like searchWithNode, remembering the last node passed on the wanted side of k.
+   * Returns the closest node below k (or above k), or the node with key k if inclusive and k is in the tree
+   */
+  private WAVLNode boundNode(int k, boolean below, boolean inclusive) {
+	  WAVLNode best=null;
+	  WAVLNode node=root;
+	  while(node!=null&&node.isInnerNode()) {
+		  if(node.getKey()==k) {
+			  if(inclusive) {
+				  return node;
+			  }
+			  node = below ? node.getLeft() : node.getRight();
+		  }
+		  else if(node.getKey()<k) {	//node is below k, continue in the right subtree
+			  if(below) {
+				  best=node;
+			  }
+			  node=node.getRight();
+		  }
+		  else {						//node is above k, continue in the left subtree
+			  if(!below) {
+				  best=node;
+			  }
+			  node=node.getLeft();
+		  }
+	  }
+	  return best;
+  }
+  
+  /**
+   * public String floor(int k)
+   * Returns the info of the item with the largest key smaller than or equal to k, or null if there is none
+   */
+  public String floor(int k) {
+	  return valueOf(floorNode(k));
+  }
+  
+  /**
+   * public String ceiling(int k)
+   * Returns the info of the item with the smallest key larger than or equal to k, or null if there is none
+   */
+  public String ceiling(int k) {
+	  return valueOf(ceilingNode(k));
+  }
+  
+  /**
+   * public String lower(int k)
+   * Returns the info of the item with the largest key strictly smaller than k, or null if there is none
+   */
+  public String lower(int k) {
+	  return valueOf(lowerNode(k));
+  }
+  
+  /**
+   * public String higher(int k)
+   * Returns the info of the item with the smallest key strictly larger than k, or null if there is none
+   */
+  public String higher(int k) {
+	  return valueOf(higherNode(k));
+  }
+  
+  /**
+   * public int floorKey(int k, int missing)
+   * Returns the largest key smaller than or equal to k, or missing if there is none
+   */
+  public int floorKey(int k, int missing) {
+	  return keyOf(floorNode(k), missing);
+  }
+  
+  /**
+   * public int ceilingKey(int k, int missing)
+   * Returns the smallest key larger than or equal to k, or missing if there is none
+   */
+  public int ceilingKey(int k, int missing) {
+	  return keyOf(ceilingNode(k), missing);
+  }
+  
+  /**
+   * public int lowerKey(int k, int missing)
+   * Returns the largest key strictly smaller than k, or missing if there is none
+   */
+  public int lowerKey(int k, int missing) {
+	  return keyOf(lowerNode(k), missing);
+  }
+  
+  /**
+   * public int higherKey(int k, int missing)
+   * Returns the smallest key strictly larger than k, or missing if there is none
+   */
+  public int higherKey(int k, int missing) {
+	  return keyOf(higherNode(k), missing);
+  }
+  
+  private static String valueOf(WAVLNode node) {
+	  return node==null ? null : node.getValue();
+  }
+  
+  private static int keyOf(WAVLNode node, int missing) {
+	  return node==null ? missing : node.getKey();
+  }
+  
+  /**
+   * public static WAVLTree join(WAVLTree left, int key, String value, WAVLTree right)
+   *
+   * Returns a tree holding the items of left, the item (key, value) and the items of right.
+   * All keys of left must be smaller than key, and all keys of right larger than it,
+   * and both trees must be of the same class (with the same aggregate, for AggregateWAVLTrees).
+   * Works in O(|rank(left) - rank(right)| + 1) time by hanging the lower tree on the spine of the higher one.
+   * The nodes of left and right move to the returned tree, and both are left empty
+   */
+  public static WAVLTree join(WAVLTree left, int key, String value, WAVLTree right) {
+	  if(!left.sameNodes(right)) {
+		  throw new IllegalArgumentException("cannot join a "+left.getClass().getSimpleName()+" with a "+right.getClass().getSimpleName()+" of other nodes");
+	  }
+	  if((!left.empty()&&left.max.getKey()>=key)||(!right.empty()&&right.min.getKey()<=key)) {
+		  throw new IllegalArgumentException("keys of left must be smaller than "+key+" and keys of right larger than it");
+	  }
+	  WAVLTree tree = left.emptyTree();
+	  tree.joinRoots(left.root, tree.newNode(key, value), right.root);
+	  tree.min = left.empty() ? tree.selectNode(tree.root, 0) : left.min;
+	  tree.max = right.empty() ? tree.selectNode(tree.root, tree.size()-1) : right.max;
+	  left.clear();
+	  right.clear();
+	  return tree;
+  }
+  
+  /**
+   * public WAVLTree[] split(int k)
+   *
+   * Returns two trees: the first holds the items with keys smaller than k,
+   * the second the items with keys larger than or equal to k.
+   * Works in O(log n) time: the subtrees hanging off the search path of k are joined
+   * from the bottom up, and the costs of these joins add up to the height of the tree.
+   * The nodes move to the returned trees, and this tree is left empty
+   */
+  public WAVLTree[] split(int k) {
+	  WAVLNode[] parts = splitRoots(root, k);
+	  if(parts[1]!=null) {
+		  joinRoots(null, parts[1], parts[2]);
+		  parts[2]=root;
+	  }
+	  clear();
+	  return new WAVLTree[] {adopt(parts[0]), adopt(parts[2])};
+  }
+  
+  /**
+   * public WAVLTree union(WAVLTree other)
+   *
+   * Returns a tree holding the items of this tree and of other. Where both hold the key, the info of this tree is kept.
+   * Both trees are left empty, their nodes moving to the result
+   */
+  public WAVLTree union(WAVLTree other) {
+	  return combine(other, SetOperation.UNION);
+  }
+  
+  /**
+   * public WAVLTree intersect(WAVLTree other)
+   *
+   * Returns a tree holding the items of this tree whose keys are also in other.
+   * Both trees are left empty
+   */
+  public WAVLTree intersect(WAVLTree other) {
+	  return combine(other, SetOperation.INTERSECT);
+  }
+  
+  /**
+   * public WAVLTree difference(WAVLTree other)
+   *
+   * Returns a tree holding the items of this tree whose keys are not in other.
+   * Both trees are left empty
+   */
+  public WAVLTree difference(WAVLTree other) {
+	  return combine(other, SetOperation.DIFFERENCE);
+  }
+  
+  /**
+   * runs a set operation on the common ForkJoinPool. It takes O(m log(n/m + 1)) work for trees
+   * of sizes m <= n, and its two recursive calls on disjoint parts of the trees run in parallel
+   */
+  private WAVLTree combine(WAVLTree other, SetOperation operation) {
+	  if(other==this) {
+		  throw new IllegalArgumentException("a tree cannot be combined with itself");
+	  }
+	  if(!sameNodes(other)) {
+		  throw new IllegalArgumentException("cannot combine a "+getClass().getSimpleName()+" with a "+other.getClass().getSimpleName()+" of other nodes");
+	  }
+	  WAVLNode result = ForkJoinPool.commonPool().invoke(new SetTask(operation, root, other.root));
+	  clear();
+	  other.clear();
+	  return adopt(result);
+  }
+  
+  private enum SetOperation {UNION, INTERSECT, DIFFERENCE}
+  
+  /**
+   * the join based set operations of Blelloch, Ferizovic & Sun ('16) on the subtrees of a and b.
+   * Each task has a tree of its own as the work area of its splits and joins
+   */
+  @SuppressWarnings("serial")		//tasks are never serialized
+  private static class SetTask extends RecursiveTask<WAVLNode> {
+	  private static final int SEQUENTIAL_SIZE = 1<<12;		//smaller problems are not worth a task
+	  private final SetOperation operation;
+	  private final WAVLNode a;
+	  private final WAVLNode b;
+	  
+	  SetTask(SetOperation operation, WAVLNode a, WAVLNode b) {
+		  this.operation=operation;
+		  this.a=a;
+		  this.b=b;
+	  }
+	  
+	  @Override
+	  protected WAVLNode compute() {
+		  return combine(new WAVLTree(), a, b, true);
+	  }
+	  
+	  /**
+	   * returns the root of the result, which is also left in work.root
+	   */
+	  private WAVLNode combine(WAVLTree work, WAVLNode a, WAVLNode b, boolean parallel) {
+		  int sizeA = sizeOf(a);
+		  int sizeB = sizeOf(b);
+		  if(sizeA==0||sizeB==0) {
+			  boolean keepB = operation==SetOperation.UNION&&sizeA==0;
+			  boolean keepNone = operation==SetOperation.INTERSECT;
+			  work.root = keepNone ? null : (keepB ? b : a);
+			  return work.root;
+		  }
+		  boolean difference = operation==SetOperation.DIFFERENCE;
+		  WAVLNode pivot = difference ? b : a;		//the root of the tree that is not split
+		  WAVLNode pivotLeft = pivot.getLeft();
+		  WAVLNode pivotRight = pivot.getRight();
+		  WAVLNode[] parts = work.splitRoots(difference ? a : b, pivot.getKey());
+		  WAVLNode left, right;
+		  if(parallel&&sizeA+sizeB>SEQUENTIAL_SIZE) {
+			  SetTask leftTask = difference ? new SetTask(operation, parts[0], pivotLeft)
+					  : new SetTask(operation, pivotLeft, parts[0]);
+			  leftTask.fork();
+			  right = difference ? combine(work, parts[2], pivotRight, true)
+					  : combine(work, pivotRight, parts[2], true);
+			  left = leftTask.join();
+		  }
+		  else {
+			  left = difference ? combine(work, parts[0], pivotLeft, false)
+					  : combine(work, pivotLeft, parts[0], false);
+			  right = difference ? combine(work, parts[2], pivotRight, false)
+					  : combine(work, pivotRight, parts[2], false);
+		  }
+		  if(operation==SetOperation.UNION||(operation==SetOperation.INTERSECT&&parts[1]!=null)) {
+			  work.joinRoots(left, pivot, right);
+		  }
+		  else {
+			  work.joinRoots(left, right);
+		  }
+		  return work.root;
+	  }
+  }
+  
+  private static int sizeOf(WAVLNode node) {
+	  return node==null ? 0 : node.getSubtreeSize();
+  }
+  
+  /**
+   * splits the subtree of node into the roots of the subtrees with keys smaller and larger than k,
+   * and the node with key k between them (null if there is none).
+   * this tree's root is used as a work area for the joins
+   */
+  private WAVLNode[] splitRoots(WAVLNode node, int k) {
+	  if(node==null||!node.isInnerNode()) {
+		  return new WAVLNode[] {null, null, null};
+	  }
+	  WAVLNode left=node.getLeft();
+	  WAVLNode right=node.getRight();
+	  if(k==node.getKey()) {
+		  return new WAVLNode[] {left, node, right};
+	  }
+	  if(k<node.getKey()) {
+		  WAVLNode[] parts = splitRoots(left, k);
+		  joinRoots(parts[2], node, right);
+		  parts[2]=root;
+		  return parts;
+	  }
+	  WAVLNode[] parts = splitRoots(right, k);
+	  joinRoots(left, node, parts[0]);
+	  parts[0]=root;
+	  return parts;
+  }
+  
+  /**
+   * makes this tree's root the join of the subtrees of left and right, all of whose keys are larger.
+   * The maximal node of left is split off and joins them
+   */
+  private void joinRoots(WAVLNode left, WAVLNode right) {
+	  if(sizeOf(left)==0) {
+		  root=right;
+		  return;
+	  }
+	  WAVLNode last=splitLast(left);
+	  joinRoots(root, last, right);
+  }
+  
+  /**
+   * makes this tree's root the subtree of node without its maximal node, and returns that node
+   */
+  private WAVLNode splitLast(WAVLNode node) {
+	  if(!node.getRight().isInnerNode()) {
+		  root=node.getLeft();
+		  return node;
+	  }
+	  WAVLNode last=splitLast(node.getRight());
+	  joinRoots(node.getLeft(), node, root);
+	  return last;
+  }
+  
+  /**
+   * returns a new tree whose root is node (which may be null or external)
+   */
+  private WAVLTree adopt(WAVLNode node) {
+	  WAVLTree tree = emptyTree();
+	  if(node!=null&&node.isInnerNode()) {
+		  node.parent=null;
+		  tree.root=node;
+		  tree.min=tree.selectNode(node, 0);
+		  tree.max=tree.selectNode(node, node.getSubtreeSize()-1);
+	  }
+	  return tree;
+  }
+  
+  /**
+   * public void clear()
+   * removes all items from the tree, leaving their nodes untouched
+   */
+  @Override
+  public void clear() {
+	  super.clear();
+	  min=null;
+	  max=null;
+  }
+  
+  /**
+   * makes this tree's root the join of the subtree of left, the node x and the subtree of right
+   * (left and right may be null or external, x's links and rank are overwritten).
+   * Sets root, but not min and max
+   */
+  private void joinRoots(WAVLNode left, WAVLNode x, WAVLNode right) {
+	  if(left==null||!left.isInnerNode()) {
+		  left=EXTERNAL;
+	  }
+	  else {
+		  left.parent=null;
+	  }
+	  if(right==null||!right.isInnerNode()) {
+		  right=EXTERNAL;
+	  }
+	  else {
+		  right.parent=null;
+	  }
+	  x.parent=null;
+	  if(left.rank>right.rank+1) {			//hang x and right on the right spine of left
+		  WAVLNode parent=null;
+		  WAVLNode spine=left;
+		  while(spine.rank>right.rank) {			//external nodes do not know their parents, so the descent does
+			  parent=spine;
+			  spine=spine.getRight();
+		  }
+		  x.setLeft(spine);
+		  x.setRight(right);
+		  x.rank=right.rank+1;
+		  parent.setRight(x);
+		  root=left;
+		  recomputeSizesUpwards(parent);
+		  joinRebalance(parent);
+	  }
+	  else if(right.rank>left.rank+1) {		//hang left and x on the left spine of right
+		  WAVLNode parent=null;
+		  WAVLNode spine=right;
+		  while(spine.rank>left.rank) {
+			  parent=spine;
+			  spine=spine.getLeft();
+		  }
+		  x.setRight(spine);
+		  x.setLeft(left);
+		  x.rank=left.rank+1;
+		  parent.setLeft(x);
+		  root=right;
+		  recomputeSizesUpwards(parent);
+		  joinRebalance(parent);
+	  }
+	  else {									//ranks differ by at most one, x becomes the root
+		  x.setLeft(left);
+		  x.setRight(right);
+		  x.rank=Math.max(left.rank, right.rank)+1;
+		  root=x;
+	  }
+  }
+  
+  /**
+   * recomputes the sizes of node and of all of its ancestors from their children
+   */
+  private void recomputeSizesUpwards(WAVLNode node) {
+	  while(node!=null) {
+		  node.updateSize();
+		  node=node.getParent();
+	  }
+  }
+  
+  /**
+   * rebalances the tree after a join hung a subtree below node, climbing towards the root.
+   * Like insertRebalance, except that the 0-child may be a 1,1 node; it is rotated up and promoted,
+   * and the rank increase moves up to its parent
+   */
+  private void joinRebalance(WAVLNode node) {
+	  while(true) {
+		  while (is01(node)||is10(node)){				//promote
+			  node.rank++;
+			  if (this.root==node) {
+				  return;
+			  }
+			  node=node.parent;
+		  }
+		  WAVLNode child;
+		  if(is02(node)&&is11(node.getLeft())) {
+			  child=node.getLeft();
+			  rotateRight(node);
+		  }
+		  else if(is20(node)&&is11(node.getRight())) {
+			  child=node.getRight();
+			  rotateLeft(node);
+		  }
+		  else {
+			  insertRebalance(node);				//a rotation that keeps the rank of the subtree's top
+			  return;
+		  }
+		  child.rank++;								//child is promoted above node, which keeps its rank
+		  if(child.getParent()==null) {
+			  return;
+		  }
+		  node=child.getParent();
+	  }
+  }
           
   
   
 
 
   /**
-  * public class WAVLNode
+  * public static class WAVLNode
+  * A node holds no reference to its tree: the external node is the shared EXTERNAL, and the tree
+  * relinks its root itself. Nodes take 40 bytes with compressed oops (48 as an inner class), 56 without (64)
   */
- public class WAVLNode{
-	 private WAVLNode left;
-	 private WAVLNode right;
-	 private WAVLNode parent;
-	 private int rank;
+ public static class WAVLNode extends AbstractWAVLTree.Node<String, WAVLNode> {
 	 private int key;
-	 private String value;
-	 private int subTreeSize;
 	 
 	 /**
-	  * public WAVLNode()
+	  * initializes the external node
+	  */
+	 			private WAVLNode() {
+	 				super(null);
+	 				this.rank=-1;
+	 				this.key=-1;
+	 				this.size=0;
+	 			}
+	 			
+	 /**
+	  * public WAVLNode(int key, String value)
 	  *initializes a new node
 	  */
 	 			public WAVLNode(int key, String value) {
+	 				super(value);
 	 				this.rank=0;
-	 				this.right=external;
-	 				this.left=external;
+	 				this.right=EXTERNAL;
+	 				this.left=EXTERNAL;
 	 				this.key=key;
-	 				this.value=value;
-	 				this.subTreeSize=0;
+	 				this.size=0;
 	 			}
 	 			
 	 			
@@ -791,41 +1765,17 @@ public class WAVLTree {
                {
                        return key; 
                }
-               public String getValue()
-               {
-            	   
-                       return value; 
-               }
-               public WAVLNode getLeft()
-               {
-                       return left; 
-               }
-               public WAVLNode getRight()
-               {
-                       return right; 
-               }
-               
-               public WAVLNode getParent() {
-            	   return parent;
-               }
-               public boolean isInnerNode()
-               {
-            	   
-                   return (this!=external); 
-               }
-
-               public int getSubtreeSize()
+               public void setSubtreeSize(int size)
                {
-                       return subTreeSize;
+                       this.size=size;
                }
                
-               public void setSubtreeSize(int size)
-               {
-                       this.subTreeSize=size;
+               private int leftDiff() {
+            	   return rank-left.rank;
                }
                
-               public int getRank() {
-            	   return rank;
+               private int rightDiff() {
+            	   return rank-right.rank;
                }
                
                /**
@@ -835,7 +1785,7 @@ public class WAVLTree {
                
                public void setRight(WAVLNode child) {
             	   this.right=child;
-            	   if(child!=external) {
+            	   if(child.isInnerNode()) {
             		   child.parent=this;
             	   }
             	   this.updateSize();
@@ -848,7 +1798,7 @@ public class WAVLTree {
             	  */
                public void setLeft(WAVLNode child) {
             	   this.left=child;
-            	   if(child!=external) {
+            	   if(child.isInnerNode()) {
             		   child.parent=this;
             	   }
             	   this.updateSize();
@@ -874,59 +1824,85 @@ public class WAVLTree {
                      
                /**
           	  * public void replace(WAVLNode node2)
-          	  *Switches locations of the current node with node 2. This method is violates the binary search rules until the deletion is completed
+          	  *Switches locations (and ranks and sizes) of the current node with node 2, relinking the nodes in place.
+          	  *This method violates the binary search rules until the deletion is completed.
+          	  *If the current node is the root, the caller makes node2 the tree's root
           	  * (It is only used while deleting)
           	  */
                
                public void replace(WAVLNode node2) {
-            	   	int nodeRank=this.getRank();
-            	   	int replacementRank=node2.getRank();
-            	   	int nodeSize=this.getSubtreeSize();
-            	   	int replacementSize=node2.getSubtreeSize();
-            		  WAVLNode node1Replacement=new WAVLNode(-2,null);
-            		  WAVLNode node2Replacement=new WAVLNode(-3,null);
-            		  this.replaceAndExtract(node1Replacement);
-            		  node2.replaceAndExtract(node2Replacement);
-            		  node1Replacement.replaceAndExtract(node2);
-            		  node2Replacement.replaceAndExtract(this);
-            		  node2.rank=nodeRank;
-            		  this.rank=replacementRank;
-            		  this.subTreeSize=replacementSize;
-            		  node2.subTreeSize=nodeSize;
-            		  if(node2.parent!=null) {node2.parent.updateSize();}	  
+            	   if(this.parent==node2) {				//let this be the upper node of the two
+            		   node2.replace(this);
+            		   return;
+            	   }
+            	   int rank=this.rank;
+            	   this.rank=node2.rank;
+            	   node2.rank=rank;
+            	   int size=this.size;
+            	   this.size=node2.size;
+            	   node2.size=size;
+            	   
+            	   WAVLNode parent1=this.parent;
+            	   WAVLNode left1=this.left;
+            	   WAVLNode right1=this.right;
+            	   WAVLNode parent2=node2.parent;
+            	   WAVLNode left2=node2.left;
+            	   WAVLNode right2=node2.right;
+            	   if(parent1!=null) {						//if this was the root, the tree makes node2 its root
+            		   if(parent1.left==this) {
+            			   parent1.left=node2;
+            		   }
+            		   else {
+            			   parent1.right=node2;
+            		   }
+            	   }
+            	   node2.parent=parent1;
+            	   if(parent2==this) {					//node2 is a child of this, and becomes its parent
+            		   if(left1==node2) {
+            			   left1=this;
+            		   }
+            		   else {
+            			   right1=this;
+            		   }
+            	   }
+            	   else {
+            		   if(parent2.left==node2) {
+            			   parent2.left=this;
+            		   }
+            		   else {
+            			   parent2.right=this;
+            		   }
+            		   this.parent=parent2;
+            	   }
+            	   node2.left=left1;
+            	   node2.right=right1;
+            	   this.left=left2;
+            	   this.right=right2;
+            	   node2.adoptChildren();
+            	   this.adoptChildren();
             	}
                
-               
-               
                /**
-            	  * public void replaceAndExtract(WAVLNode replacement)
-            	  *Switches locations of the current node with replacement and cleans node's pointers to children and parent
-            	  * (It is only used while deleting)
-            	  */
-               
-               public void replaceAndExtract(WAVLNode replacement) {
-            		  replacement.setLeft(this.getLeft());
-            		  replacement.setRight(this.getRight());
-            		  if(this.parent==null) {
-            			  replacement.parent=null;
-            			  root=replacement;
-            		  }
-            		  else {
-            			 this.setParentChild(replacement);
-            		  }
-            		  this.setRight(external);
-            		  this.setLeft(external); 
-            		  this.parent=null;
+                * makes this node the parent of its inner children
+                */
+               private void adoptChildren() {
+            	   if(left.isInnerNode()) {
+            		   left.parent=this;
+            	   }
+            	   if(right.isInnerNode()) {
+            		   right.parent=this;
+            	   }
                }
                
                
+               
                /**
           	  * public void updateSize()
           	  *Updates the node's subtreeSize according to the sizes of his children
           	  */
                public void updateSize() {
-            	   if(this!=external&&this!=null) {
-            		   this.subTreeSize=1 + this.getRight().subTreeSize + this.getLeft().subTreeSize;
+            	   if(this.isInnerNode()) {
+            		   this.size=1 + this.getRight().size + this.getLeft().size;
             	   }
                }         
       }